@@ -0,0 +1,43 @@
+package com.inflearn.querydslstudy.benchmark;
+
+import com.inflearn.querydslstudy.QuerydslStudyApplication;
+import com.inflearn.querydslstudy.dto.MemberImport;
+import com.inflearn.querydslstudy.repository.MemberBulkLoader;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/*
+ * 벤치마크용 스프링 컨텍스트
+ * 내장 in-memory H2 에 members 명의 회원(팀 10개, 나이 0~99)을 MemberBulkLoader 로 적재한다.
+ */
+final class BenchmarkContext {
+
+    static final int TEAM_COUNT = 10;
+
+    private BenchmarkContext() {
+    }
+
+    static ConfigurableApplicationContext start(int members) {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(QuerydslStudyApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(
+                        "--spring.profiles.active=bench",
+                        "--spring.datasource.url=jdbc:h2:mem:bench-" + members + ";DB_CLOSE_DELAY=-1",
+                        "--spring.jpa.properties.hibernate.format_sql=false",
+                        "--spring.jpa.properties.hibernate.use_sql_comments=false",
+                        "--logging.level.root=warn",
+                        "--logging.level.org.hibernate.SQL=warn",
+                        "--logging.level.org.hibernate.type=warn"
+                );
+
+        try (Stream<MemberImport> imports = LongStream.range(0, members)
+                .mapToObj(i -> new MemberImport("member" + i, (int) (i % 100), "team" + (i % TEAM_COUNT)))) {
+            context.getBean(MemberBulkLoader.class).load(imports);
+        }
+        return context;
+    }
+}
@@ -0,0 +1,102 @@
+package com.inflearn.querydslstudy.benchmark;
+
+import com.inflearn.querydslstudy.dto.MemberSearchCondition;
+import com.inflearn.querydslstudy.dto.MemberTeamDto;
+import com.inflearn.querydslstudy.repository.MemberRepository;
+import com.inflearn.querydslstudy.repository.support.MemberCountCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * MemberRepositoryImpl 검색/페이징 벤치마크
+ * ./gradlew jmh -Pjmh.includes=MemberRepositoryBenchmark
+ * 같은 조건을 반복해서 조회하므로 그대로 두면 두번째 호출부터 MemberCountCache 에서 count 를 꺼내온다.
+ * 매 호출 전에 count 캐시를 비워서(@Setup(Level.Invocation)) 항상 count 쿼리까지 실행한 시간을 측정한다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MemberRepositoryBenchmark {
+
+    private static final int PAGE_SIZE = 20;
+
+    @Param({"1000", "100000", "1000000"})
+    public int members;
+
+    private ConfigurableApplicationContext context;
+    private MemberRepository memberRepository;
+    private MemberCountCache countCache;
+
+    private MemberSearchCondition all;
+    private MemberSearchCondition teamAndAge;
+    private PageRequest firstPage;
+    private PageRequest middlePage;
+    private PageRequest lastPage;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = BenchmarkContext.start(members);
+        memberRepository = context.getBean(MemberRepository.class);
+        countCache = context.getBean(MemberCountCache.class);
+
+        all = new MemberSearchCondition();
+        teamAndAge = new MemberSearchCondition();
+        teamAndAge.setTeamName("team1");
+        teamAndAge.setAgeGoe(30);
+        teamAndAge.setAgeLoe(40);
+
+        int lastPageNumber = (members - 1) / PAGE_SIZE;
+        firstPage = PageRequest.of(0, PAGE_SIZE);
+        middlePage = PageRequest.of(lastPageNumber / 2, PAGE_SIZE);
+        lastPage = PageRequest.of(lastPageNumber, PAGE_SIZE);
+    }
+
+    @Setup(Level.Invocation)
+    public void clearCountCache() {
+        countCache.clear();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> search() {
+        return memberRepository.search(teamAndAge);
+    }
+
+    @Benchmark
+    public Page<MemberTeamDto> searchPageSimple_first() {
+        return memberRepository.searchPageSimple(all, firstPage);
+    }
+
+    @Benchmark
+    public Page<MemberTeamDto> searchPageComplex_first() {
+        return memberRepository.searchPageComplex(all, firstPage);
+    }
+
+    @Benchmark
+    public Page<MemberTeamDto> searchPageComplex_middle() {
+        return memberRepository.searchPageComplex(all, middlePage);
+    }
+
+    @Benchmark
+    public Page<MemberTeamDto> searchPageComplex_last() {
+        return memberRepository.searchPageComplex(all, lastPage);
+    }
+}
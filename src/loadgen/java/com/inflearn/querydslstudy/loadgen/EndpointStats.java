@@ -0,0 +1,81 @@
+package com.inflearn.querydslstudy.loadgen;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * 엔드포인트별 응답 시간(마이크로초)과 응답 코드 집계
+ * 응답 시간은 요청을 보내야 했던 시각(intended start)부터 잰다. 서버가 느려져서 요청이 밀려도 대기 시간이 빠지지 않는다. (coordinated omission)
+ */
+class EndpointStats {
+
+    private final String endpoint;
+    private final Recorder recorder = new Recorder(3);
+    private final Histogram total = new Histogram(3);
+    private Histogram interval;
+
+    private final LongAdder ok = new LongAdder();
+    private final LongAdder notModified = new LongAdder();
+    private final LongAdder tooManyRequests = new LongAdder();
+    private final LongAdder unavailable = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    EndpointStats(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    void record(int status, long latencyMicros) {
+        recorder.recordValue(Math.max(1, latencyMicros));
+        if (status >= 200 && status < 300)
+            ok.increment();
+        else if (status == 304)
+            notModified.increment();
+        else if (status == 429)
+            tooManyRequests.increment();
+        else if (status == 503)
+            unavailable.increment();
+        else
+            failed.increment();
+    }
+
+    // 응답을 받지 못한 요청 (연결 실패, 타임아웃)
+    void failed() {
+        failed.increment();
+    }
+
+    // 미처리 요청이 max-outstanding 을 넘어서 보내지 못한 요청
+    void dropped() {
+        dropped.increment();
+    }
+
+    /**
+     * 지난 호출 이후 기록된 값을 전체 히스토그램에 더하고 돌려준다. 리포터 스레드에서만 호출한다.
+     */
+    synchronized Histogram interval() {
+        interval = recorder.getIntervalHistogram(interval);
+        total.add(interval);
+        return interval;
+    }
+
+    static String header() {
+        return String.format("%-10s %9s %9s %9s %9s %9s %9s %7s %7s %7s %7s %7s %7s",
+                "endpoint", "count", "req/s", "p50(ms)", "p99(ms)", "p999(ms)", "max(ms)",
+                "2xx", "304", "429", "503", "error", "dropped");
+    }
+
+    synchronized String summary(double seconds) {
+        interval();
+        return String.format("%-10s %9d %9.1f %9.2f %9.2f %9.2f %9.2f %7d %7d %7d %7d %7d %7d",
+                endpoint, total.getTotalCount(), total.getTotalCount() / seconds,
+                millis(total.getValueAtPercentile(50)), millis(total.getValueAtPercentile(99)),
+                millis(total.getValueAtPercentile(99.9)), millis(total.getMaxValue()),
+                ok.sum(), notModified.sum(), tooManyRequests.sum(), unavailable.sum(), failed.sum(), dropped.sum());
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+}
@@ -0,0 +1,181 @@
+package com.inflearn.querydslstudy.loadgen;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * /v1, /v2, /v3 회원 검색 부하 생성기 (./gradlew loadgen, 실행중인 서버 대상)
+ * open-loop : 응답을 기다리지 않고 정해진 도착률(loadgen.rate)로 요청을 보낸다. 서버가 느려지면 미처리 요청이 쌓이고 그만큼 응답 시간에 반영된다.
+ * warmup 동안 보낸 요청은 집계하지 않는다. 끝나면 엔드포인트별 처리량과 p50/p99/p999 를 출력한다.
+ *
+ * ./gradlew loadgen -Ploadgen.rate=200 -Ploadgen.duration=60 -Ploadgen.endpoints=v2:1,v3:3
+ */
+public class LoadGenerator {
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final String baseUrl;
+    private final double rate;
+    private final boolean poisson;
+    private final long warmupNanos;
+    private final long durationNanos;
+    private final int threads;
+    private final int maxOutstanding;
+    private final int timeoutMillis;
+    private final long reportIntervalSeconds;
+    private final Random arrivals;
+    private final RequestMix mix;
+    private final Map<String, EndpointStats> stats = new LinkedHashMap<>();
+    private final AtomicInteger outstanding = new AtomicInteger();
+
+    LoadGenerator(Properties properties) {
+        long seed = Long.parseLong(properties.getProperty("loadgen.seed", "42"));
+        this.baseUrl = properties.getProperty("loadgen.url", "http://localhost:8080");
+        this.rate = Double.parseDouble(properties.getProperty("loadgen.rate", "100"));
+        this.poisson = properties.getProperty("loadgen.arrival", "poisson").equals("poisson");
+        this.warmupNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(properties.getProperty("loadgen.warmup", "10")));
+        this.durationNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(properties.getProperty("loadgen.duration", "60")));
+        this.threads = Integer.parseInt(properties.getProperty("loadgen.threads", "64"));
+        this.maxOutstanding = Integer.parseInt(properties.getProperty("loadgen.max-outstanding", "10000"));
+        this.timeoutMillis = Integer.parseInt(properties.getProperty("loadgen.timeout", "5000"));
+        this.reportIntervalSeconds = Long.parseLong(properties.getProperty("loadgen.report-interval", "5"));
+        this.arrivals = new Random(seed);
+        this.mix = new RequestMix(properties, seed + 1);
+        for (String endpoint : mix.endpoints())
+            stats.put(endpoint, new EndpointStats(endpoint));
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        Properties properties = new Properties();
+        properties.putAll(System.getProperties());
+        LoadGenerator generator = new LoadGenerator(properties);
+        // HttpURLConnection keep-alive 는 기본으로 host 당 5개만 재사용한다.
+        System.setProperty("http.maxConnections", String.valueOf(generator.threads));
+        generator.run();
+    }
+
+    void run() throws InterruptedException {
+        ExecutorService workers = Executors.newFixedThreadPool(threads, daemon("loadgen-worker"));
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(daemon("loadgen-reporter"));
+        reporter.scheduleAtFixedRate(this::progress, reportIntervalSeconds, reportIntervalSeconds, TimeUnit.SECONDS);
+
+        System.out.printf("%s rate=%.1f/s arrival=%s warmup=%ds duration=%ds threads=%d%n", baseUrl, rate,
+                poisson ? "poisson" : "constant", TimeUnit.NANOSECONDS.toSeconds(warmupNanos),
+                TimeUnit.NANOSECONDS.toSeconds(durationNanos), threads);
+
+        long start = System.nanoTime();
+        long recordFrom = start + warmupNanos;
+        long end = recordFrom + durationNanos;
+        long intended = start;
+        while (intended < end) {
+            long delay;
+            while ((delay = intended - System.nanoTime()) > 0)
+                LockSupport.parkNanos(delay);
+
+            RequestMix.Request request = mix.next();
+            boolean recorded = intended >= recordFrom;
+            if (outstanding.incrementAndGet() > maxOutstanding) {
+                outstanding.decrementAndGet();
+                if (recorded)
+                    stats.get(request.endpoint).dropped();
+            } else {
+                long intendedStart = intended;
+                workers.execute(() -> {
+                    try {
+                        send(request, intendedStart, recorded);
+                    } finally {
+                        outstanding.decrementAndGet();
+                    }
+                });
+            }
+            intended += nextInterval();
+        }
+
+        workers.shutdown();
+        if (!workers.awaitTermination(timeoutMillis * 2L, TimeUnit.MILLISECONDS))
+            System.out.printf("%d requests still outstanding%n", outstanding.get());
+        reporter.shutdownNow();
+        report((double) durationNanos / NANOS_PER_SECOND);
+    }
+
+    // 다음 요청까지의 간격. poisson 이면 지수분포
+    private long nextInterval() {
+        double mean = NANOS_PER_SECOND / rate;
+        if (!poisson)
+            return (long) mean;
+        return (long) (-Math.log(1 - arrivals.nextDouble()) * mean);
+    }
+
+    private void send(RequestMix.Request request, long intendedStart, boolean recorded) {
+        EndpointStats endpointStats = stats.get(request.endpoint);
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) new URL(baseUrl + request.pathAndQuery).openConnection();
+            connection.setConnectTimeout(timeoutMillis);
+            connection.setReadTimeout(timeoutMillis);
+            connection.setRequestProperty("Accept", "application/json");
+            int status = connection.getResponseCode();
+            drain(status >= 400 ? connection.getErrorStream() : connection.getInputStream());
+            if (recorded)
+                endpointStats.record(status, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intendedStart));
+        } catch (IOException e) {
+            if (connection != null)
+                connection.disconnect();
+            if (recorded)
+                endpointStats.failed();
+        }
+    }
+
+    // 응답 본문을 끝까지 읽어야 커넥션이 keep-alive 로 재사용된다.
+    private static void drain(InputStream in) throws IOException {
+        if (in == null)
+            return;
+        try (InputStream body = in) {
+            byte[] buffer = new byte[8192];
+            while (body.read(buffer) >= 0) {
+                // discard
+            }
+        }
+    }
+
+    private void progress() {
+        StringBuilder line = new StringBuilder("outstanding=").append(outstanding.get());
+        for (Map.Entry<String, EndpointStats> entry : stats.entrySet()) {
+            Histogram interval = entry.getValue().interval();
+            line.append(String.format("  %s: %d req, p99 %.2fms", entry.getKey(), interval.getTotalCount(),
+                    interval.getTotalCount() == 0 ? 0 : interval.getValueAtPercentile(99) / 1000.0));
+        }
+        System.out.println(line);
+    }
+
+    private void report(double seconds) {
+        System.out.println();
+        System.out.println(EndpointStats.header());
+        for (EndpointStats endpointStats : stats.values())
+            System.out.println(endpointStats.summary(seconds));
+    }
+
+    private static ThreadFactory daemon(String prefix) {
+        AtomicInteger sequence = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,129 @@
+package com.inflearn.querydslstudy.loadgen;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+
+/*
+ * 엔드포인트 비율과 검색 조건(MemberSearchCondition) / 페이지(Pageable) 조합을 seed 로 재현 가능하게 만든다.
+ * 기본값은 InitMember 데이터(member0~99, teamA/teamB, 나이 0~99) 기준이다.
+ */
+class RequestMix {
+
+    static class Request {
+        final String endpoint;
+        final String pathAndQuery;
+
+        Request(String endpoint, String pathAndQuery) {
+            this.endpoint = endpoint;
+            this.pathAndQuery = pathAndQuery;
+        }
+    }
+
+    private final Random random;
+    private final List<String> endpoints = new ArrayList<>();
+    private final double[] cumulativeWeights;
+    private final String[] teams;
+    private final int members;
+    private final int maxAge;
+    private final int[] sizes;
+    private final int maxPage;
+    private final double teamRate;
+    private final double ageRate;
+    private final double usernameRate;
+
+    RequestMix(Properties properties, long seed) {
+        this.random = new Random(seed);
+
+        // v1:1,v2:1,v3:1 -> 엔드포인트:가중치
+        String[] weighted = properties.getProperty("loadgen.endpoints", "v1:1,v2:1,v3:1").split(",");
+        cumulativeWeights = new double[weighted.length];
+        double sum = 0;
+        for (int i = 0; i < weighted.length; i++) {
+            String[] pair = weighted[i].trim().split(":");
+            endpoints.add(pair[0]);
+            sum += pair.length > 1 ? Double.parseDouble(pair[1]) : 1;
+            cumulativeWeights[i] = sum;
+        }
+        for (int i = 0; i < cumulativeWeights.length; i++)
+            cumulativeWeights[i] /= sum;
+
+        this.teams = properties.getProperty("loadgen.teams", "teamA,teamB").split(",");
+        this.members = Integer.parseInt(properties.getProperty("loadgen.members", "100"));
+        this.maxAge = Integer.parseInt(properties.getProperty("loadgen.max-age", "100"));
+        String[] sizeValues = properties.getProperty("loadgen.sizes", "10,20,50").split(",");
+        this.sizes = new int[sizeValues.length];
+        for (int i = 0; i < sizeValues.length; i++)
+            sizes[i] = Integer.parseInt(sizeValues[i].trim());
+        this.maxPage = Integer.parseInt(properties.getProperty("loadgen.max-page", "5"));
+        this.teamRate = Double.parseDouble(properties.getProperty("loadgen.team-rate", "0.5"));
+        this.ageRate = Double.parseDouble(properties.getProperty("loadgen.age-rate", "0.5"));
+        this.usernameRate = Double.parseDouble(properties.getProperty("loadgen.username-rate", "0.2"));
+    }
+
+    List<String> endpoints() {
+        return endpoints;
+    }
+
+    /**
+     * 스케줄러 스레드 하나에서만 호출한다. (같은 seed 면 같은 순서)
+     */
+    Request next() {
+        String endpoint = pickEndpoint();
+        StringBuilder query = new StringBuilder();
+
+        if (random.nextDouble() < teamRate)
+            param(query, "teamName", teams[random.nextInt(teams.length)]);
+        if (random.nextDouble() < ageRate) {
+            int ageGoe = random.nextInt(maxAge);
+            param(query, "ageGoe", String.valueOf(ageGoe));
+            param(query, "ageLoe", String.valueOf(ageGoe + random.nextInt(maxAge - ageGoe + 1)));
+        }
+        if (random.nextDouble() < usernameRate)
+            username(query);
+
+        // v1 은 페이징 없이 전체 결과를 돌려준다.
+        if (!endpoint.equals("v1")) {
+            param(query, "page", String.valueOf(random.nextInt(maxPage)));
+            param(query, "size", String.valueOf(sizes[random.nextInt(sizes.length)]));
+        }
+        return new Request(endpoint, "/" + endpoint + "/members" + (query.length() > 0 ? "?" + query : ""));
+    }
+
+    private String pickEndpoint() {
+        double r = random.nextDouble();
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (r < cumulativeWeights[i])
+                return endpoints.get(i);
+        }
+        return endpoints.get(endpoints.size() - 1);
+    }
+
+    // 정확히 일치 60%, prefix 30%, contains 10%
+    private void username(StringBuilder query) {
+        String username = "member" + random.nextInt(members);
+        double r = random.nextDouble();
+        if (r < 0.6) {
+            param(query, "username", username);
+        } else if (r < 0.9) {
+            param(query, "username", username.substring(0, Math.min(username.length(), 7)));
+            param(query, "usernameMatch", "PREFIX");
+        } else {
+            param(query, "username", username.substring(3));
+            param(query, "usernameMatch", "CONTAINS");
+        }
+    }
+
+    private static void param(StringBuilder query, String name, String value) {
+        if (query.length() > 0)
+            query.append('&');
+        try {
+            query.append(name).append('=').append(URLEncoder.encode(value, "UTF-8"));
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.inflearn.querydslstudy.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/*
+ * perf 프로필 데이터 분포 (PerfDataGenerator)
+ * 같은 seed 면 같은 데이터가 만들어진다. (스레드 수와 무관)
+ */
+@Getter @Setter
+@ConfigurationProperties("member.perf-data")
+public class PerfDataProperties {
+
+    private long members = 1_000_000;
+
+    private int teams = 2_000;
+
+    private long seed = 42;
+
+    // 팀 크기 zipf 지수. 0 이면 균등, 클수록 앞쪽 팀(team0, team1 ...)에 회원이 몰린다.
+    private double teamSkew = 1.1;
+
+    // 팀이 없는 회원 비율
+    private double noTeamRate = 0.01;
+
+    private int minAge = 0;
+
+    private int maxAge = 99;
+
+    // 나이 분포 지수. 1 이면 균등, 클수록 minAge 쪽에 몰린다. (age = min + range * u^ageSkew)
+    private double ageSkew = 2.0;
+
+    // 중복 이름(user0 ~ user{commonUsernames-1}, zipf)을 갖는 회원 비율. 나머지는 member{id}
+    private double duplicateUsernameRate = 0.2;
+
+    private int commonUsernames = 1_000;
+
+    private double usernameSkew = 1.0;
+
+    private int threads = 4;
+
+    // 트랜잭션 하나에 insert 할 회원 수. 스레드는 이 단위로 나눠서 적재한다.
+    private int chunkSize = 50_000;
+
+    private int batchSize = 1_000;
+}
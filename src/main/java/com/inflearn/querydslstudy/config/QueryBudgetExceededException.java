@@ -0,0 +1,14 @@
+package com.inflearn.querydslstudy.config;
+
+/**
+ * 요청의 statement 수가 member.query-log.budget 을 넘었을때 (member.query-log.fail-over-budget=true)
+ * 대부분 지연 로딩으로 인한 N+1 이다.
+ */
+public class QueryBudgetExceededException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public QueryBudgetExceededException(QueryCounter.Counts counts) {
+        super("statement budget " + counts.getBudget() + " exceeded: " + counts);
+    }
+}
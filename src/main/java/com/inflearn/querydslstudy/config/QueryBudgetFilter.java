@@ -0,0 +1,53 @@
+package com.inflearn.querydslstudy.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/*
+ * 요청마다 QueryCounter 를 등록하고 요청이 끝났을때 statement 수가 예산을 넘었으면 로그를 남긴다.
+ * DeferredResult 요청은 async dispatch 가 끝날때 (실제 응답 시점) 확인한다.
+ */
+@Slf4j
+public class QueryBudgetFilter extends OncePerRequestFilter {
+
+    private static final String COUNTS_ATTRIBUTE = QueryBudgetFilter.class.getName() + ".COUNTS";
+
+    private final int budget;
+    private final boolean failOverBudget;
+
+    public QueryBudgetFilter(int budget, boolean failOverBudget) {
+        this.budget = budget;
+        this.failOverBudget = failOverBudget;
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        QueryCounter.Counts counts = (QueryCounter.Counts) request.getAttribute(COUNTS_ATTRIBUTE);
+        if (counts == null) {
+            counts = new QueryCounter.Counts(budget, failOverBudget);
+            request.setAttribute(COUNTS_ATTRIBUTE, counts);
+        }
+
+        QueryCounter.Counts previous = QueryCounter.attach(counts);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            QueryCounter.attach(previous);
+            if (!request.isAsyncStarted() && counts.isOverBudget())
+                log.warn("{} {} executed {} statements (budget {}) : {}",
+                        request.getMethod(), request.getRequestURI(), counts.getTotal(), budget, counts);
+        }
+    }
+}
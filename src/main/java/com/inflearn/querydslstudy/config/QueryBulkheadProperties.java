@@ -0,0 +1,33 @@
+package com.inflearn.querydslstudy.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+@Getter @Setter
+@ConfigurationProperties("member.bulkhead")
+public class QueryBulkheadProperties {
+
+    // false 면 예전처럼 요청 스레드에서 바로 실행한다.
+    private boolean enabled = true;
+
+    private int poolSize = 8;
+
+    private int queueCapacity = 50;
+
+    // 엔드포인트별 동시 실행 한도. limits 에 없는 엔드포인트는 defaultLimit 을 사용한다. (ex. member.bulkhead.limits.v1=2)
+    private int defaultLimit = 4;
+
+    private Map<String, Integer> limits = new HashMap<>();
+
+    // 이 시간이 지나면 응답은 503 으로 끝내고 실행중인 쿼리도 트랜잭션 타임아웃으로 취소한다.
+    private Duration timeout = Duration.ofSeconds(5);
+
+    public int limitOf(String endpoint) {
+        return limits.getOrDefault(endpoint, defaultLimit);
+    }
+}
@@ -0,0 +1,163 @@
+package com.inflearn.querydslstudy.config;
+
+import lombok.Getter;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/*
+ * 스레드(요청)별 statement 실행 수 (QueryLogDataSource 가 증가시킨다)
+ * start() 또는 attach() 로 카운터를 등록한 스레드에서만 센다. 요청에서는 QueryBudgetFilter 가 등록하고,
+ * 다른 스레드에서 쿼리를 실행할때는 wrap() 으로 같은 카운터를 넘겨준다.
+ * 예산(budget)을 넘으면 요청이 끝날때 로그를 남기거나(fail=false), 그 다음 statement 를 실행하지 않고 예외를 던진다.
+ */
+public final class QueryCounter {
+
+    private static final ThreadLocal<Counts> current = new ThreadLocal<>();
+
+    private QueryCounter() {
+    }
+
+    public enum StatementType {
+        SELECT, INSERT, UPDATE, DELETE, OTHER
+    }
+
+    public static Counts start() {
+        Counts counts = new Counts(0, false);
+        current.set(counts);
+        return counts;
+    }
+
+    /**
+     * @return 현재 스레드의 카운터. 등록되지 않았으면 null
+     */
+    public static Counts current() {
+        return current.get();
+    }
+
+    /**
+     * @return 이전에 등록되어 있던 카운터 (복구용)
+     */
+    public static Counts attach(Counts counts) {
+        Counts previous = current.get();
+        if (counts == null)
+            current.remove();
+        else
+            current.set(counts);
+        return previous;
+    }
+
+    public static void end() {
+        current.remove();
+    }
+
+    public static Runnable wrap(Runnable task) {
+        Counts counts = current.get();
+        if (counts == null)
+            return task;
+        return () -> {
+            Counts previous = attach(counts);
+            try {
+                task.run();
+            } finally {
+                attach(previous);
+            }
+        };
+    }
+
+    public static <T> Supplier<T> wrap(Supplier<T> task) {
+        Counts counts = current.get();
+        if (counts == null)
+            return task;
+        return () -> {
+            Counts previous = attach(counts);
+            try {
+                return task.get();
+            } finally {
+                attach(previous);
+            }
+        };
+    }
+
+    static void count(String sql, int statements) {
+        Counts counts = current.get();
+        if (counts != null)
+            counts.add(typeOf(sql), statements);
+    }
+
+    static StatementType typeOf(String sql) {
+        int i = 0;
+        int length = sql.length();
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (Character.isWhitespace(c) || c == '(') {
+                i++;
+            } else if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+                int end = sql.indexOf("*/", i + 2);
+                i = end < 0 ? length : end + 2;
+            } else {
+                break;
+            }
+        }
+        if (sql.regionMatches(true, i, "select", 0, 6) || sql.regionMatches(true, i, "with", 0, 4))
+            return StatementType.SELECT;
+        if (sql.regionMatches(true, i, "insert", 0, 6))
+            return StatementType.INSERT;
+        if (sql.regionMatches(true, i, "update", 0, 6))
+            return StatementType.UPDATE;
+        if (sql.regionMatches(true, i, "delete", 0, 6))
+            return StatementType.DELETE;
+        return StatementType.OTHER;
+    }
+
+    public static class Counts {
+
+        private final AtomicLong[] counts = new AtomicLong[StatementType.values().length];
+        @Getter
+        private final int budget;
+        private final boolean failOverBudget;
+
+        /**
+         * @param budget 0 이면 제한 없음
+         */
+        public Counts(int budget, boolean failOverBudget) {
+            this.budget = budget;
+            this.failOverBudget = failOverBudget;
+            for (int i = 0; i < counts.length; i++)
+                counts[i] = new AtomicLong();
+        }
+
+        private void add(StatementType type, int statements) {
+            counts[type.ordinal()].addAndGet(statements);
+            if (failOverBudget && isOverBudget())
+                throw new QueryBudgetExceededException(this);
+        }
+
+        public long get(StatementType type) {
+            return counts[type.ordinal()].get();
+        }
+
+        public long getTotal() {
+            long total = 0;
+            for (AtomicLong count : counts)
+                total += count.get();
+            return total;
+        }
+
+        public boolean isOverBudget() {
+            return budget > 0 && getTotal() > budget;
+        }
+
+        public void reset() {
+            for (AtomicLong count : counts)
+                count.set(0);
+        }
+
+        @Override
+        public String toString() {
+            return "select=" + get(StatementType.SELECT) + ", insert=" + get(StatementType.INSERT)
+                    + ", update=" + get(StatementType.UPDATE) + ", delete=" + get(StatementType.DELETE)
+                    + ", other=" + get(StatementType.OTHER);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.inflearn.querydslstudy.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+@EnableConfigurationProperties(QueryBulkheadProperties.class)
+public class QueryExecutorConfig {
+
+    /*
+     * searchPageParallel 에서 content 쿼리와 count 쿼리를 동시에 실행하기 위한 전용 스레드풀
+     * 쿼리마다 커넥션을 하나씩 사용하므로 pool-size 는 커넥션풀 크기보다 작게 잡는다.
+     * 큐가 가득 차면 호출한 스레드에서 직접 실행해서 직렬 실행으로 자연스럽게 떨어지도록 한다.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ThreadPoolTaskExecutor memberQueryExecutor(@Value("${member.parallel-paging.pool-size:4}") int poolSize,
+                                                      @Value("${member.parallel-paging.queue-capacity:100}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("member-query-");
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        return executor;
+    }
+
+    /*
+     * 검색 API 를 톰캣 요청 스레드가 아닌 별도 스레드에서 실행하기 위한 스레드풀 (QueryBulkhead)
+     * 느린 검색이 몰려도 톰캣 스레드를 모두 잡아먹지 않도록 큐까지 가득 차면 바로 거절한다. (AbortPolicy)
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ThreadPoolTaskExecutor searchRequestExecutor(QueryBulkheadProperties properties) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("search-request-");
+        executor.setCorePoolSize(properties.getPoolSize());
+        executor.setMaxPoolSize(properties.getPoolSize());
+        executor.setQueueCapacity(properties.getQueueCapacity());
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        return executor;
+    }
+
+    /*
+     * bulk 변경 이후의 인덱스 rebuild 를 커밋한 요청 스레드가 아닌 곳에서 실행하기 위한 스레드 (UsernameIndex)
+     * rebuild 는 한번에 하나씩만 실행되므로 스레드는 하나면 된다.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ThreadPoolTaskExecutor indexRebuildExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("index-rebuild-");
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        return executor;
+    }
+}
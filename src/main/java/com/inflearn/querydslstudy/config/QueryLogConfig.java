@@ -0,0 +1,73 @@
+package com.inflearn.querydslstudy.config;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * 애플리케이션이 사용하는 DataSource(dataSource 빈)를 QueryLogDataSource 로 감싼다. (member.query-log.enabled=false 면 사용하지 않음)
+ * replica 구성(ReplicaDataSourceConfig)의 커넥션 풀 빈들은 라우팅 DataSource 뒤에 있으므로 감싸지 않는다. (같은 statement 가 두번 기록됨)
+ * 요청별 statement 수(QueryCounter)도 여기서 센다.
+ * 집계 결과는 /actuator/querylog 로 볼 수 있다.
+ */
+@Configuration
+@EnableConfigurationProperties(QueryLogProperties.class)
+@ConditionalOnProperty(prefix = "member.query-log", name = "enabled", matchIfMissing = true)
+public class QueryLogConfig {
+
+    @Bean(destroyMethod = "shutdown")
+    public SlowQueryLog slowQueryLog(QueryLogProperties properties) {
+        return new SlowQueryLog(properties);
+    }
+
+    @Bean
+    public static BeanPostProcessor queryLogDataSourcePostProcessor(ObjectProvider<SlowQueryLog> slowQueryLog) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if ("dataSource".equals(beanName) && bean instanceof DataSource && !(bean instanceof QueryLogDataSource))
+                    return new QueryLogDataSource((DataSource) bean, slowQueryLog.getObject());
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    public QueryBudgetFilter queryBudgetFilter(QueryLogProperties properties) {
+        return new QueryBudgetFilter(properties.getBudget(), properties.isFailOverBudget());
+    }
+
+    @Bean
+    public QueryLogEndpoint queryLogEndpoint(SlowQueryLog slowQueryLog) {
+        return new QueryLogEndpoint(slowQueryLog);
+    }
+
+    @Endpoint(id = "querylog")
+    public static class QueryLogEndpoint {
+
+        private final SlowQueryLog slowQueryLog;
+
+        public QueryLogEndpoint(SlowQueryLog slowQueryLog) {
+            this.slowQueryLog = slowQueryLog;
+        }
+
+        @ReadOperation
+        public Map<String, Object> statistics() {
+            List<SlowQueryLog.StatementStatistics> statements = slowQueryLog.statistics();
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("dropped", slowQueryLog.dropped());
+            result.put("statements", statements);
+            return result;
+        }
+    }
+}
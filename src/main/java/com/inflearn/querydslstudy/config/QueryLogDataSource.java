@@ -0,0 +1,159 @@
+package com.inflearn.querydslstudy.config;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/*
+ * statement 실행 시간과 바인딩값을 SlowQueryLog 로 넘기고 QueryCounter 를 증가시키는 DataSource 프록시
+ * Connection 과 Statement 를 JDK 프록시로 감싸서 setXxx(index, value) 로 바인딩값을 모으고 execute* 실행 시간을 잰다.
+ * Statement.addBatch(sql) 로 모은 batch 는 sql 마다 따로 세고, 실행 시간은 sql 수로 나눠서 각각 기록한다.
+ */
+public class QueryLogDataSource extends DelegatingDataSource {
+
+    private final SlowQueryLog slowQueryLog;
+
+    public QueryLogDataSource(DataSource target, SlowQueryLog slowQueryLog) {
+        super(target);
+        this.slowQueryLog = slowQueryLog;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return proxy(Connection.class, new ConnectionHandler(super.getConnection()));
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return proxy(Connection.class, new ConnectionHandler(super.getConnection(username, password)));
+    }
+
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(QueryLogDataSource.class.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    private class ConnectionHandler implements InvocationHandler {
+        private final Connection target;
+
+        private ConnectionHandler(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = QueryLogDataSource.invoke(target, method, args);
+            switch (method.getName()) {
+                case "prepareCall":
+                    return proxy(CallableStatement.class, new StatementHandler((Statement) result, (String) args[0]));
+                case "prepareStatement":
+                    return proxy(PreparedStatement.class, new StatementHandler((Statement) result, (String) args[0]));
+                case "createStatement":
+                    return proxy(Statement.class, new StatementHandler((Statement) result, null));
+                default:
+                    return result;
+            }
+        }
+    }
+
+    private class StatementHandler implements InvocationHandler {
+        private final Statement target;
+        private final String sql;
+        private final List<Object> parameters = new ArrayList<>();
+        private int batchSize;
+        // Statement.addBatch(sql) 로 추가된 sql (PreparedStatement 는 addBatch() 이므로 비어있음)
+        private final List<String> batchSql = new ArrayList<>();
+
+        private StatementHandler(Statement target, String sql) {
+            this.target = target;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                bind((Integer) args[0], name.equals("setNull") ? null : args[1]);
+            } else if (name.equals("clearParameters")) {
+                parameters.clear();
+            } else if (name.equals("addBatch")) {
+                batchSize++;
+                if (args != null && args.length == 1 && args[0] instanceof String)
+                    batchSql.add((String) args[0]);
+            } else if (name.equals("clearBatch")) {
+                clearBatch();
+            } else if (name.startsWith("execute")) {
+                return execute(method, args);
+            }
+            return QueryLogDataSource.invoke(target, method, args);
+        }
+
+        private void bind(int index, Object value) {
+            while (parameters.size() < index)
+                parameters.add(null);
+            parameters.set(index - 1, value);
+        }
+
+        private void clearBatch() {
+            batchSize = 0;
+            batchSql.clear();
+        }
+
+        private Object execute(Method method, Object[] args) throws Throwable {
+            if (method.getName().equals("executeBatch") && !batchSql.isEmpty())
+                return executeSqlBatch(method, args);
+
+            String executed = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : sql;
+            if (executed != null)
+                QueryCounter.count(executed, batchSize > 0 ? batchSize : 1);
+            long start = System.nanoTime();
+            try {
+                return QueryLogDataSource.invoke(target, method, args);
+            } finally {
+                long elapsed = System.nanoTime() - start;
+                if (executed != null) {
+                    List<Object> logged = batchSize > 0
+                            ? Collections.singletonList("batch of " + batchSize)
+                            : parameters;
+                    slowQueryLog.record(executed, logged, elapsed);
+                }
+                if (method.getName().equals("executeBatch"))
+                    clearBatch();
+            }
+        }
+
+        private Object executeSqlBatch(Method method, Object[] args) throws Throwable {
+            for (String added : batchSql)
+                QueryCounter.count(added, 1);
+            long start = System.nanoTime();
+            try {
+                return QueryLogDataSource.invoke(target, method, args);
+            } finally {
+                long elapsed = (System.nanoTime() - start) / batchSql.size();
+                List<Object> logged = Collections.singletonList("batch of " + batchSql.size());
+                for (String added : batchSql)
+                    slowQueryLog.record(added, logged, elapsed);
+                clearBatch();
+            }
+        }
+    }
+}
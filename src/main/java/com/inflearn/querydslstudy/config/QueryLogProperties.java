@@ -0,0 +1,32 @@
+package com.inflearn.querydslstudy.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter @Setter
+@ConfigurationProperties("member.query-log")
+public class QueryLogProperties {
+
+    private boolean enabled = true;
+
+    // 이 시간 이상 걸린 statement 는 sql, 바인딩값, 실행시간을 남긴다.
+    private Duration slowThreshold = Duration.ofMillis(200);
+
+    // 빠른 statement 중에서 로그를 남길 비율 (0.01 = 1%)
+    private double sampleRate = 0.0;
+
+    // 로그 스레드가 처리하지 못하고 쌓인 로그가 이보다 많으면 버린다. (요청 스레드는 기다리지 않는다)
+    private int bufferSize = 1000;
+
+    // 집계할 최대 statement 종류 수
+    private int maxStatements = 1000;
+
+    // 요청 하나에서 실행할 statement 수 예산. 넘으면 로그를 남긴다. (0 이면 확인하지 않음)
+    private int budget = 0;
+
+    // true 면 예산을 넘는 statement 를 실행하지 않고 QueryBudgetExceededException 을 던진다.
+    private boolean failOverBudget = false;
+}
@@ -0,0 +1,128 @@
+package com.inflearn.querydslstudy.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.support.BeanDefinitionBuilder;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.beans.factory.support.BeanDefinitionRegistryPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/*
+ * member.datasource.replica-urls 가 설정되어 있을때만 primary/replica 라우팅 DataSource 를 등록한다.
+ * 설정이 없으면 기존처럼 spring.datasource 하나만 사용한다.
+ * primary 와 replica 커넥션 풀은 각각 빈(primaryDataSource, replicaDataSource0..)으로 등록해서
+ * 종료시 close 되고 hikari 메트릭(hikaricp.connections.*)에 풀 이름별로 나오도록 한다.
+ * 애플리케이션에서 주입받는 DataSource 는 라우팅 DataSource(dataSource, @Primary) 이다.
+ */
+@Configuration
+@EnableConfigurationProperties(ReplicaDataSourceProperties.class)
+@ConditionalOnProperty(prefix = "member.datasource", name = "replica-urls")
+public class ReplicaDataSourceConfig {
+
+    private static final String REPLICA_BEAN_PREFIX = "replicaDataSource";
+
+    @Bean
+    public HikariDataSource primaryDataSource(DataSourceProperties dataSourceProperties) {
+        HikariDataSource primary = dataSourceProperties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        primary.setPoolName("primary");
+        return primary;
+    }
+
+    // replica 수는 설정에 따라 달라지므로 빈 정의를 직접 등록한다.
+    @Bean
+    public static BeanDefinitionRegistryPostProcessor replicaDataSourceRegistrar(Environment environment) {
+        return new BeanDefinitionRegistryPostProcessor() {
+            @Override
+            public void postProcessBeanDefinitionRegistry(BeanDefinitionRegistry registry) {
+                BeanFactory beanFactory = (BeanFactory) registry;
+                List<String> urls = replicaUrls(environment);
+                for (int i = 0; i < urls.size(); i++) {
+                    String poolName = "replica-" + i;
+                    String url = urls.get(i);
+                    registry.registerBeanDefinition(REPLICA_BEAN_PREFIX + i, BeanDefinitionBuilder
+                            .genericBeanDefinition(HikariDataSource.class,
+                                    () -> replica(beanFactory.getBean(DataSourceProperties.class), poolName, url))
+                            .getBeanDefinition());
+                }
+            }
+
+            @Override
+            public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) {
+            }
+        };
+    }
+
+    private static List<String> replicaUrls(Environment environment) {
+        return Binder.get(environment)
+                .bind("member.datasource.replica-urls", Bindable.listOf(String.class))
+                .orElse(Collections.emptyList());
+    }
+
+    private static HikariDataSource replica(DataSourceProperties dataSourceProperties, String poolName, String url) {
+        HikariDataSource replica = dataSourceProperties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .url(url)
+                .build();
+        replica.setPoolName(poolName);
+        replica.setReadOnly(true);
+        return replica;
+    }
+
+    // DataSource 빈이 초기화될때 DataSourceInitializerInvoker 가 @Primary DataSource(이 빈)를 찾는다.
+    // 이 빈을 만드는 중에 primary 커넥션 풀이 처음 만들어지면 순환 참조가 되므로 primary 풀을 먼저 만든다.
+    @Bean
+    @Primary
+    @DependsOn("primaryDataSource")
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primary, BeanFactory beanFactory,
+                                 ReplicaDataSourceProperties replicaProperties) {
+        List<DataSource> replicas = new ArrayList<>();
+        for (int i = 0; i < replicaProperties.getReplicaUrls().size(); i++)
+            replicas.add(beanFactory.getBean(REPLICA_BEAN_PREFIX + i, DataSource.class));
+
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary, replicas,
+                replicaProperties.getReplicaStrategy(), replicaProperties.isStickyAfterWrite());
+        routing.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+
+    @Bean
+    public OncePerRequestFilter readYourWritesFilter() {
+        return new OncePerRequestFilter() {
+            @Override
+            protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+                    throws ServletException, IOException {
+                ReplicaRoutingDataSource.beginRequest();
+                try {
+                    filterChain.doFilter(request, response);
+                } finally {
+                    ReplicaRoutingDataSource.endRequest();
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,21 @@
+package com.inflearn.querydslstudy.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter @Setter
+@ConfigurationProperties("member.datasource")
+public class ReplicaDataSourceProperties {
+
+    // 읽기 전용 트랜잭션을 보낼 replica 들. username/password 는 spring.datasource 와 같은 값을 사용한다.
+    private List<String> replicaUrls = new ArrayList<>();
+
+    private ReplicaRoutingDataSource.Strategy replicaStrategy = ReplicaRoutingDataSource.Strategy.ROUND_ROBIN;
+
+    // 같은 요청에서 쓰기 트랜잭션을 사용한 이후의 읽기는 primary 로 보낸다. (replica 복제 지연으로 방금 쓴 값이 안보이는 문제 방지)
+    private boolean stickyAfterWrite = true;
+}
@@ -0,0 +1,159 @@
+package com.inflearn.querydslstudy.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/*
+ * @Transactional(readOnly = true) 트랜잭션은 replica 로, 나머지는 primary 로 보내는 DataSource
+ * 트랜잭션 시작 시점에는 readOnly 여부가 아직 설정되지 않았으므로 반드시 LazyConnectionDataSourceProxy 로 감싸서
+ * 첫 쿼리를 실행할때 커넥션을 가져오도록 해야 한다.
+ * 요청 스레드가 아닌 스레드(searchRequestExecutor 등)에서 쿼리를 실행할때는 wrap() 으로 요청의 쓰기 여부를 같이 넘겨야
+ * 쓰기 이후의 읽기가 primary 로 간다.
+ * usePrimaryInRequest() 를 호출한 요청은 읽기도 모두 primary 로 보낸다. (복제 지연이 있으면 안되는 읽기, 예: ETag 검증)
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    public enum Strategy {
+        ROUND_ROBIN, LEAST_CONNECTIONS
+    }
+
+    static final String PRIMARY = "primary";
+
+    // 요청 범위에서만 값이 있다. (readYourWritesFilter 가 요청 시작/종료시 설정/제거, wrap() 으로 다른 스레드와 공유)
+    private static final ThreadLocal<RequestState> requestState = new ThreadLocal<>();
+
+    private final List<DataSource> replicas;
+    private final Strategy strategy;
+    private final boolean stickyAfterWrite;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas, Strategy strategy, boolean stickyAfterWrite) {
+        this.replicas = replicas;
+        this.strategy = strategy;
+        this.stickyAfterWrite = stickyAfterWrite;
+
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (int i = 0; i < replicas.size(); i++) {
+            targets.put(i, replicas.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+    }
+
+    static void beginRequest() {
+        requestState.set(new RequestState());
+    }
+
+    static void endRequest() {
+        requestState.remove();
+    }
+
+    /**
+     * 현재 스레드가 replica 라우팅을 사용하는 요청 범위인지 (replica 설정이 없으면 항상 false)
+     */
+    public static boolean isRoutedRequest() {
+        return requestState.get() != null;
+    }
+
+    /**
+     * 현재 요청의 남은 읽기를 모두 primary 로 보낸다. (요청 범위가 아니면 아무것도 하지 않음)
+     */
+    public static void usePrimaryInRequest() {
+        RequestState state = requestState.get();
+        if (state != null)
+            state.primaryOnly = true;
+    }
+
+    /**
+     * 현재 요청의 라우팅 상태(쓰기 여부 등)를 task 를 실행하는 스레드에도 등록한다. (요청 범위가 아니면 task 그대로)
+     */
+    public static Runnable wrap(Runnable task) {
+        RequestState state = requestState.get();
+        if (state == null)
+            return task;
+        return () -> {
+            RequestState previous = attach(state);
+            try {
+                task.run();
+            } finally {
+                attach(previous);
+            }
+        };
+    }
+
+    public static <T> Supplier<T> wrap(Supplier<T> task) {
+        RequestState state = requestState.get();
+        if (state == null)
+            return task;
+        return () -> {
+            RequestState previous = attach(state);
+            try {
+                return task.get();
+            } finally {
+                attach(previous);
+            }
+        };
+    }
+
+    private static RequestState attach(RequestState state) {
+        RequestState previous = requestState.get();
+        if (state == null)
+            requestState.remove();
+        else
+            requestState.set(state);
+        return previous;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        boolean readOnly = TransactionSynchronizationManager.isActualTransactionActive()
+                && TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+        RequestState state = requestState.get();
+        if (!readOnly) {
+            if (TransactionSynchronizationManager.isActualTransactionActive() && state != null)
+                state.wrote = true;
+            return PRIMARY;
+        }
+        if (replicas.isEmpty() || (state != null && (state.primaryOnly || (stickyAfterWrite && state.wrote))))
+            return PRIMARY;
+        return strategy == Strategy.LEAST_CONNECTIONS ? leastConnections() : Math.floorMod(next.getAndIncrement(), replicas.size());
+    }
+
+    private int leastConnections() {
+        int selected = 0;
+        int min = Integer.MAX_VALUE;
+        for (int i = 0; i < replicas.size(); i++) {
+            int active = activeConnections(replicas.get(i));
+            if (active < min) {
+                min = active;
+                selected = i;
+            }
+        }
+        return selected;
+    }
+
+    private int activeConnections(DataSource dataSource) {
+        if (dataSource instanceof HikariDataSource) {
+            HikariPoolMXBean pool = ((HikariDataSource) dataSource).getHikariPoolMXBean();
+            if (pool != null)
+                return pool.getActiveConnections();
+        }
+        return 0;
+    }
+
+    // 요청 스레드와 wrap() 된 task 의 스레드가 같이 사용한다.
+    private static class RequestState {
+        private volatile boolean wrote;
+        private volatile boolean primaryOnly;
+    }
+}
@@ -0,0 +1,158 @@
+package com.inflearn.querydslstudy.config;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/*
+ * org.hibernate.SQL / org.hibernate.type 로그 대신 사용하는 JDBC statement 로그 (QueryLogDataSource 가 호출)
+ * - 모든 statement 는 정규화한 sql 별로 실행 횟수/시간만 집계한다. (statistics)
+ * - slow-threshold 이상 걸렸거나 sample-rate 로 뽑힌 statement 만 sql, 바인딩값, 실행시간을 로그로 남긴다.
+ * - 로그는 요청 스레드가 아니라 별도 스레드에서 쓴다. 버퍼가 가득 차면 기다리지 않고 버린다. (dropped)
+ */
+@Slf4j
+public class SlowQueryLog {
+
+    private static final Pattern COMMENT = Pattern.compile("/\\*.*?\\*/", Pattern.DOTALL);
+    private static final Pattern IN_LIST = Pattern.compile("\\(\\s*\\?(\\s*,\\s*\\?)+\\s*\\)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final long slowThresholdNanos;
+    private final double sampleRate;
+    private final int maxStatements;
+    private final BlockingQueue<Entry> buffer;
+    private final ConcurrentMap<String, Stats> statistics = new ConcurrentHashMap<>();
+    // hibernate 는 같은 sql 문자열을 재사용하므로 정규화 결과를 캐시해서 statement 마다 정규식을 돌리지 않는다.
+    private final ConcurrentMap<String, String> normalizedCache = new ConcurrentHashMap<>();
+    private final LongAdder dropped = new LongAdder();
+    private final Thread writer;
+
+    public SlowQueryLog(QueryLogProperties properties) {
+        this.slowThresholdNanos = properties.getSlowThreshold().toNanos();
+        this.sampleRate = properties.getSampleRate();
+        this.maxStatements = properties.getMaxStatements();
+        this.buffer = new ArrayBlockingQueue<>(properties.getBufferSize());
+        this.writer = new Thread(this::writeLoop, "slow-query-log");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * @param parameters 호출한 쪽에서 계속 사용하는 리스트. 로그를 남길 때만 복사한다.
+     */
+    public void record(String sql, List<Object> parameters, long elapsedNanos) {
+        String statement = normalizedCache.get(sql);
+        if (statement == null) {
+            statement = normalize(sql);
+            if (normalizedCache.size() < maxStatements * 4)
+                normalizedCache.put(sql, statement);
+        }
+        Stats stats = statistics.get(statement);
+        if (stats == null && statistics.size() < maxStatements)
+            stats = statistics.computeIfAbsent(statement, key -> new Stats());
+        if (stats != null)
+            stats.add(elapsedNanos);
+
+        boolean slow = elapsedNanos >= slowThresholdNanos;
+        if (slow || (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate)) {
+            if (!buffer.offer(new Entry(slow, statement, new ArrayList<>(parameters), elapsedNanos)))
+                dropped.increment();
+        }
+    }
+
+    /**
+     * 전체 실행시간이 긴 순서
+     */
+    public List<StatementStatistics> statistics() {
+        List<StatementStatistics> result = new ArrayList<>(statistics.size());
+        statistics.forEach((statement, stats) -> result.add(stats.toStatistics(statement)));
+        result.sort(Comparator.comparingLong(StatementStatistics::getTotalMillis).reversed());
+        return result;
+    }
+
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    public void shutdown() {
+        writer.interrupt();
+    }
+
+    static String normalize(String sql) {
+        String normalized = COMMENT.matcher(sql).replaceAll(" ");
+        normalized = IN_LIST.matcher(normalized).replaceAll("(?)");
+        return WHITESPACE.matcher(normalized).replaceAll(" ").trim();
+    }
+
+    private void writeLoop() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Entry entry = buffer.take();
+                if (entry.slow)
+                    log.warn("slow query {}ms : {} {}", TimeUnit.NANOSECONDS.toMillis(entry.elapsedNanos), entry.sql, entry.parameters);
+                else
+                    log.info("sampled query {}ms : {} {}", TimeUnit.NANOSECONDS.toMillis(entry.elapsedNanos), entry.sql, entry.parameters);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class Entry {
+        private final boolean slow;
+        private final String sql;
+        private final List<Object> parameters;
+        private final long elapsedNanos;
+
+        private Entry(boolean slow, String sql, List<Object> parameters, long elapsedNanos) {
+            this.slow = slow;
+            this.sql = sql;
+            this.parameters = parameters;
+            this.elapsedNanos = elapsedNanos;
+        }
+    }
+
+    private static class Stats {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        private void add(long elapsedNanos) {
+            count.increment();
+            totalNanos.add(elapsedNanos);
+            maxNanos.accumulateAndGet(elapsedNanos, Math::max);
+        }
+
+        private StatementStatistics toStatistics(String statement) {
+            return new StatementStatistics(statement, count.sum(),
+                    TimeUnit.NANOSECONDS.toMillis(totalNanos.sum()), TimeUnit.NANOSECONDS.toMillis(maxNanos.get()));
+        }
+    }
+
+    @Getter
+    public static class StatementStatistics {
+        private final String statement;
+        private final long count;
+        private final long totalMillis;
+        private final long maxMillis;
+
+        private StatementStatistics(String statement, long count, long totalMillis, long maxMillis) {
+            this.statement = statement;
+            this.count = count;
+            this.totalMillis = totalMillis;
+            this.maxMillis = maxMillis;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.inflearn.querydslstudy.controller;
+
+import com.inflearn.querydslstudy.config.PerfDataProperties;
+import com.inflearn.querydslstudy.repository.PerfDataGenerator;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/*
+ * InitMember 대신 대량 데이터로 띄운다. --spring.profiles.active=perf (application-perf.yml)
+ * @PostConstruct 에서는 아직 이벤트 리스너가 등록되기 전이라 bulk 이벤트가 전달되지 않으므로
+ * 컨텍스트가 모두 뜬 뒤(ApplicationRunner) 적재한다. 적재 후 발행하는 bulk 이벤트로 팀 통계/인덱스를 한번 만들고,
+ * 이미 만들어졌으므로 ApplicationReadyEvent 에서는 다시 읽지 않는다.
+ */
+@Profile("perf")
+@Component
+@RequiredArgsConstructor
+@EnableConfigurationProperties(PerfDataProperties.class)
+public class InitPerfData implements ApplicationRunner {
+
+    private final PerfDataGenerator perfDataGenerator;
+    private final PerfDataProperties properties;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        perfDataGenerator.generate(properties);
+    }
+}
@@ -1,14 +1,25 @@
 package com.inflearn.querydslstudy.controller;
 
+import com.inflearn.querydslstudy.dto.MemberCursorPage;
 import com.inflearn.querydslstudy.dto.MemberSearchCondition;
+import com.inflearn.querydslstudy.dto.MemberSlice;
 import com.inflearn.querydslstudy.dto.MemberTeamDto;
 import com.inflearn.querydslstudy.repository.MemberJpaRepository;
 import com.inflearn.querydslstudy.repository.MemberRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.data.web.SpringDataWebProperties;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
@@ -18,22 +29,68 @@ public class MemberController {
 
     private final MemberJpaRepository memberJpaRepository;
     private final MemberRepository memberRepository;
+    private final MemberExporter memberExporter;
+    private final QueryBulkhead queryBulkhead;
+    private final MemberSearchETags eTags;
+    private final SpringDataWebProperties dataWebProperties;
 
     @GetMapping("/v1/members")
-    public List<MemberTeamDto> searchMemberV1(MemberSearchCondition condition) {
-        return memberJpaRepository.searchByBuilder(condition);
+    public DeferredResult<List<MemberTeamDto>> searchMemberV1(MemberSearchCondition condition, WebRequest webRequest) {
+        if (eTags.checkNotModified(webRequest, "v1", condition, null))
+            return null;
+        return queryBulkhead.submit("v1", () -> memberJpaRepository.searchByBuilder(condition));
+    }
+
+    @GetMapping("/v1/members/export")
+    public ResponseEntity<StreamingResponseBody> exportMemberV1(MemberSearchCondition condition,
+                                                                @RequestParam(defaultValue = "NDJSON") MemberExporter.Format format) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(format.getContentType()))
+                .body(queryBulkhead.stream("export", memberExporter.export(condition, format)));
     }
 
     @GetMapping("/v2/members")
-    public Page<MemberTeamDto> searchMemberV2(MemberSearchCondition condition, Pageable pageable) {
-        return memberRepository.searchPageSimple(condition, pageable);
+    public DeferredResult<Page<MemberTeamDto>> searchMemberV2(MemberSearchCondition condition, Pageable pageable,
+                                                              WebRequest webRequest) {
+        if (eTags.checkNotModified(webRequest, "v2", condition, pageable))
+            return null;
+        return queryBulkhead.submit("v2", () -> memberRepository.searchPageSimple(condition, pageable));
     }
 
     @GetMapping("/v3/members")
-    public Page<MemberTeamDto> searchMemberV3(MemberSearchCondition condition, Pageable pageable) {
-        return memberRepository.searchPageComplex(condition, pageable);
+    public DeferredResult<Page<MemberTeamDto>> searchMemberV3(MemberSearchCondition condition, Pageable pageable,
+                                                              @RequestParam(defaultValue = "false") boolean parallel,
+                                                              WebRequest webRequest) {
+        if (eTags.checkNotModified(webRequest, "v3", condition, pageable))
+            return null;
+        if (parallel)
+            return queryBulkhead.submit("v3", () -> memberRepository.searchPageParallel(condition, pageable));
+        return queryBulkhead.submit("v3", () -> memberRepository.searchPageComplex(condition, pageable));
     }
 
+    @GetMapping("/v5/members")
+    public DeferredResult<MemberSlice> searchMemberV5(MemberSearchCondition condition, Pageable pageable,
+                                                      WebRequest webRequest) {
+        if (eTags.checkNotModified(webRequest, "v5", condition, pageable))
+            return null;
+        return queryBulkhead.submit("v5", () -> MemberSlice.of(memberRepository.searchSlice(condition, pageable)));
+    }
 
+    @GetMapping("/v4/members")
+    public DeferredResult<MemberCursorPage> searchMemberV4(MemberSearchCondition condition,
+                                                           @RequestParam(required = false) String cursor,
+                                                           @RequestParam(defaultValue = "20") int size) {
+        // Pageable 을 사용하는 API 와 같은 최대값 (spring.data.web.pageable.max-page-size)
+        int maxSize = dataWebProperties.getPageable().getMaxPageSize();
+        if (size < 1 || size > maxSize)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "size must be between 1 and " + maxSize);
+        Long lastMemberId;
+        try {
+            lastMemberId = MemberCursorPage.decodeCursor(cursor);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+        return queryBulkhead.submit("v4", () -> memberRepository.searchAfter(condition, lastMemberId, size));
+    }
 
 }
@@ -0,0 +1,109 @@
+package com.inflearn.querydslstudy.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.inflearn.querydslstudy.dto.MemberSearchCondition;
+import com.inflearn.querydslstudy.dto.MemberTeamDto;
+import com.inflearn.querydslstudy.repository.MemberRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Stream;
+
+/*
+ * 검색 결과를 List 로 모으지 않고 커서에서 읽는 즉시 응답으로 내보낸다.
+ * StreamingResponseBody 는 요청 스레드가 아닌 비동기 스레드에서 실행되므로 그 안에서 읽기 전용 트랜잭션을 직접 연다.
+ * 비동기 요청 타임아웃은 spring.mvc.async.request-timeout 을 따르므로 전체를 내보낼 수 있을 만큼 길게 잡아야 한다.
+ * 동시 export 수는 QueryBulkhead 의 export 한도(member.bulkhead.limits.export)로 제한한다.
+ */
+@Component
+public class MemberExporter {
+
+    private final MemberRepository memberRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate readOnlyTransaction;
+    private final int fetchSize;
+
+    public MemberExporter(MemberRepository memberRepository,
+                          ObjectMapper objectMapper,
+                          PlatformTransactionManager transactionManager,
+                          @Value("${member.export.fetch-size:1000}") int fetchSize) {
+        this.memberRepository = memberRepository;
+        this.objectMapper = objectMapper;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.fetchSize = fetchSize;
+    }
+
+    public StreamingResponseBody export(MemberSearchCondition condition, Format format) {
+        return out -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            readOnlyTransaction.execute(status -> {
+                try (Stream<MemberTeamDto> rows = memberRepository.searchStream(condition, fetchSize)) {
+                    if (format == Format.CSV)
+                        write(writer, "memberId,username,age,teamId,teamName\n");
+                    rows.forEach(row -> write(writer, format == Format.CSV ? toCsv(row) : toJson(row)));
+                }
+                return null;
+            });
+            writer.flush();
+        };
+    }
+
+    private String toJson(MemberTeamDto row) {
+        try {
+            return objectMapper.writeValueAsString(row) + "\n";
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private String toCsv(MemberTeamDto row) {
+        return String.join(",",
+                csv(row.getMemberId()),
+                csv(row.getUsername()),
+                csv(row.getAge()),
+                csv(row.getTeamId()),
+                csv(row.getTeamName())) + "\n";
+    }
+
+    private String csv(Object value) {
+        if (value == null)
+            return "";
+        String text = value.toString();
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0)
+            return text;
+        return '"' + text.replace("\"", "\"\"") + '"';
+    }
+
+    private void write(Writer writer, String text) {
+        try {
+            writer.write(text);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public enum Format {
+        NDJSON("application/x-ndjson"),
+        CSV("text/csv");
+
+        private final String contentType;
+
+        Format(String contentType) {
+            this.contentType = contentType;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+    }
+}
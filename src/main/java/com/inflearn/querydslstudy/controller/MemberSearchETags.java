@@ -0,0 +1,56 @@
+package com.inflearn.querydslstudy.controller;
+
+import com.inflearn.querydslstudy.config.ReplicaRoutingDataSource;
+import com.inflearn.querydslstudy.dto.MemberSearchCondition;
+import com.inflearn.querydslstudy.repository.support.DataVersion;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.context.request.WebRequest;
+
+import java.nio.charset.StandardCharsets;
+
+/*
+ * 검색 API 의 ETag 를 DB 조회 없이 만든다.
+ * 같은 데이터 버전에서 같은 (정규화된) 조건/페이지로 조회하면 결과도 같으므로 그대로 ETag 로 사용할 수 있다.
+ * DataVersion 은 메모리에만 있으므로 애플리케이션을 재시작하면 0 부터 다시 시작한다. 재시작 전에 받은 ETag 가
+ * 우연히 맞지 않도록 기동 시각을 같이 넣는다.
+ * (JPA 를 거치지 않고 DB 를 직접 수정하면 버전이 올라가지 않는다.)
+ * - DataVersion 은 이 인스턴스에서 커밋된 변경만 알기 때문에 단일 인스턴스에서만 맞다. 여러 대로 띄우면 다른 인스턴스에서
+ *   바뀐 데이터도 304 가 나가므로 공유 버전(DB 의 버전 테이블 등) 없이는 ETag 를 사용하면 안된다.
+ * - DataVersion 은 primary 에 커밋된 버전이라 replica 에서 읽은 결과가 어느 버전인지는 알 수 없다. (복제 지연)
+ *   그래서 replica 라우팅을 사용할때는
+ *   - If-None-Match 없는 요청 : 그대로 replica 에서 읽고, 재검증하면 항상 다시 조회되는 ETag(-replica)를 붙인다.
+ *   - If-None-Match 있는 요청 : 버전이 같으면 조회 없이 304, 다르면 primary 에서 읽고 primary 버전의 ETag 를 붙인다.
+ *   재검증하는 클라이언트만 primary 를 사용하고, 그 이후 재검증은 데이터가 바뀌기 전까지 조회 없이 304 가 된다.
+ */
+@Component
+@RequiredArgsConstructor
+public class MemberSearchETags {
+
+    private static final String REPLICA_SUFFIX = "-replica";
+
+    private final long startedAt = System.currentTimeMillis();
+    private final DataVersion dataVersion;
+
+    /**
+     * ETag 를 응답 헤더에 넣고, 요청의 If-None-Match 와 같으면 true (304)
+     */
+    public boolean checkNotModified(WebRequest webRequest, String endpoint, MemberSearchCondition condition, Pageable pageable) {
+        String eTag = of(endpoint, condition, pageable);
+        if (ReplicaRoutingDataSource.isRoutedRequest()) {
+            if (webRequest.getHeader(HttpHeaders.IF_NONE_MATCH) == null)
+                return webRequest.checkNotModified(eTag.substring(0, eTag.length() - 1) + REPLICA_SUFFIX + "\"");
+            ReplicaRoutingDataSource.usePrimaryInRequest();
+        }
+        return webRequest.checkNotModified(eTag);
+    }
+
+    String of(String endpoint, MemberSearchCondition condition, Pageable pageable) {
+        String key = endpoint + "|" + condition.normalized() + "|" + (pageable == null ? "" : pageable.toString());
+        String hash = DigestUtils.md5DigestAsHex(key.getBytes(StandardCharsets.UTF_8));
+        return "\"" + Long.toHexString(startedAt) + "-" + dataVersion.current() + "-" + hash + "\"";
+    }
+}
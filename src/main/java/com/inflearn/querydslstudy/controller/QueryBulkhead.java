@@ -0,0 +1,107 @@
+package com.inflearn.querydslstudy.controller;
+
+import com.inflearn.querydslstudy.config.QueryBulkheadProperties;
+import com.inflearn.querydslstudy.config.QueryCounter;
+import com.inflearn.querydslstudy.config.ReplicaRoutingDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/*
+ * 검색 쿼리를 searchRequestExecutor 에서 실행하고 DeferredResult 로 돌려준다.
+ * 엔드포인트마다 동시 실행 수를 제한해서 느린 검색 하나가 스레드풀 전체를 차지하지 못하도록 한다.
+ * 한도나 큐가 가득 차면 기다리지 않고 429 로 거절한다.
+ * 스트리밍 응답(export)은 MVC 비동기 스레드에서 실행되므로 stream() 으로 한도만 적용한다.
+ */
+@Component
+public class QueryBulkhead {
+
+    private final TaskExecutor executor;
+    private final QueryBulkheadProperties properties;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ConcurrentMap<String, Semaphore> permits = new ConcurrentHashMap<>();
+
+    public QueryBulkhead(@Qualifier("searchRequestExecutor") TaskExecutor executor,
+                         QueryBulkheadProperties properties,
+                         PlatformTransactionManager transactionManager) {
+        this.executor = executor;
+        this.properties = properties;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        // 타임아웃이 지난 쿼리는 JDBC statement timeout 으로 DB 에서도 취소되도록 트랜잭션 타임아웃을 건다.
+        this.readOnlyTransaction.setTimeout((int) Math.max(1, properties.getTimeout().getSeconds()));
+    }
+
+    public <T> DeferredResult<T> submit(String endpoint, Supplier<T> query) {
+        DeferredResult<T> result = new DeferredResult<>(properties.getTimeout().toMillis());
+        if (!properties.isEnabled()) {
+            result.setResult(query.get());
+            return result;
+        }
+
+        Semaphore semaphore = acquire(endpoint);
+        try {
+            // 요청 스레드의 QueryCounter, replica 라우팅 상태를 worker 스레드에도 등록한다.
+            executor.execute(ReplicaRoutingDataSource.wrap(QueryCounter.wrap(() -> {
+                try {
+                    // 큐에서 기다리는 동안 이미 타임아웃된 요청은 실행하지 않는다.
+                    if (!result.isSetOrExpired())
+                        result.setResult(readOnlyTransaction.execute(status -> query.get()));
+                } catch (Throwable e) {
+                    result.setErrorResult(e);
+                } finally {
+                    semaphore.release();
+                }
+            })));
+        } catch (RejectedExecutionException e) {
+            semaphore.release();
+            throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "search queue is full", e);
+        }
+
+        result.onTimeout(() -> result.setErrorResult(
+                new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, endpoint + " timed out")));
+        return result;
+    }
+
+    /**
+     * body 를 실행하는 동안 endpoint 의 permit 을 잡는다.
+     * body 가 실행될때 permit 을 얻고 끝나면 반환하므로 실행되지 않은 응답이 permit 을 잡고 있지 않는다.
+     * 아직 아무것도 쓰지 않았을때 거절하므로 응답은 429 가 된다.
+     */
+    public StreamingResponseBody stream(String endpoint, StreamingResponseBody body) {
+        if (!properties.isEnabled())
+            return body;
+        return out -> {
+            Semaphore semaphore = acquire(endpoint);
+            try {
+                body.writeTo(out);
+            } finally {
+                semaphore.release();
+            }
+        };
+    }
+
+    private Semaphore acquire(String endpoint) {
+        Semaphore semaphore = permits.computeIfAbsent(endpoint, key -> new Semaphore(properties.limitOf(key)));
+        if (!semaphore.tryAcquire())
+            throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, endpoint + " concurrency limit exceeded");
+        return semaphore;
+    }
+
+    int availablePermits(String endpoint) {
+        Semaphore semaphore = permits.get(endpoint);
+        return semaphore == null ? properties.limitOf(endpoint) : semaphore.availablePermits();
+    }
+}
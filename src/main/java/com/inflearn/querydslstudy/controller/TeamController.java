@@ -0,0 +1,31 @@
+package com.inflearn.querydslstudy.controller;
+
+import com.inflearn.querydslstudy.dto.TeamStatisticsDto;
+import com.inflearn.querydslstudy.dto.TeamWithMembersDto;
+import com.inflearn.querydslstudy.repository.TeamRepository;
+import com.inflearn.querydslstudy.repository.support.TeamStatisticsRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequiredArgsConstructor
+public class TeamController {
+
+    private final TeamRepository teamRepository;
+    private final TeamStatisticsRegistry teamStatisticsRegistry;
+
+    @GetMapping("/teams")
+    public Page<TeamWithMembersDto> teams(Pageable pageable) {
+        return teamRepository.findTeamsWithMembers(pageable);
+    }
+
+    @GetMapping("/teams/statistics")
+    public List<TeamStatisticsDto> teamStatistics() {
+        return teamStatisticsRegistry.findAll();
+    }
+}
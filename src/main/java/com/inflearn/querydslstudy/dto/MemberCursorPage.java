@@ -0,0 +1,51 @@
+package com.inflearn.querydslstudy.dto;
+
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+@Getter
+public class MemberCursorPage {
+
+    private final List<MemberTeamDto> content;
+    private final int size;
+    private final boolean hasNext;
+    private final String nextCursor;
+
+    private MemberCursorPage(List<MemberTeamDto> content, int size, boolean hasNext, String nextCursor) {
+        this.content = content;
+        this.size = size;
+        this.hasNext = hasNext;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * size + 1 개를 조회한 결과를 받아서 다음 페이지 존재 여부와 커서를 계산한다.
+     */
+    public static MemberCursorPage of(List<MemberTeamDto> rows, int size) {
+        boolean hasNext = rows.size() > size;
+        List<MemberTeamDto> content = hasNext ? rows.subList(0, size) : rows;
+        String nextCursor = hasNext ? encodeCursor(content.get(content.size() - 1).getMemberId()) : null;
+        return new MemberCursorPage(content, size, hasNext, nextCursor);
+    }
+
+    public static String encodeCursor(Long lastMemberId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(String.valueOf(lastMemberId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 클라이언트가 보낸 커서를 마지막 member id 로 복원한다. 커서가 없으면 첫 페이지(null)
+     */
+    public static Long decodeCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty())
+            return null;
+        try {
+            return Long.valueOf(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("invalid cursor: " + cursor, e);
+        }
+    }
+}
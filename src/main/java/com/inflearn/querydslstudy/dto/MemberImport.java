@@ -0,0 +1,19 @@
+package com.inflearn.querydslstudy.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@NoArgsConstructor
+@Data
+public class MemberImport {
+
+    private String username;
+    private Integer age;
+    private String teamName;
+
+    public MemberImport(String username, Integer age, String teamName) {
+        this.username = username;
+        this.age = age;
+        this.teamName = teamName;
+    }
+}
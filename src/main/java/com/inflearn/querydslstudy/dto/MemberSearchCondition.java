@@ -2,6 +2,8 @@ package com.inflearn.querydslstudy.dto;
 
 import lombok.Data;
 
+import static org.springframework.util.StringUtils.hasText;
+
 @Data
 public class MemberSearchCondition {
     //회원명, 팀명, 나이(ageGoe, ageLoe)
@@ -9,4 +11,27 @@ public class MemberSearchCondition {
     private String teamName;
     private Integer ageGoe;
     private Integer ageLoe;
+    // 회원명 검색 방식. 없으면 EXACT
+    private UsernameMatch usernameMatch;
+
+    public enum UsernameMatch {
+        EXACT,    // username = ?
+        PREFIX,   // username like 'x%'  : username 인덱스 range scan
+        CONTAINS  // username like '%x%' : UsernameIndex(trigram) 으로 후보 id 를 먼저 찾는다.
+    }
+
+    /**
+     * 검색 결과가 같은 조건은 같은 값이 되도록 정규화한 복사본 (빈 문자열은 조건이 없는 것과 같다)
+     * 캐시 key 로 사용한다.
+     */
+    public MemberSearchCondition normalized() {
+        MemberSearchCondition normalized = new MemberSearchCondition();
+        normalized.setUsername(hasText(username) ? username : null);
+        normalized.setTeamName(hasText(teamName) ? teamName : null);
+        normalized.setAgeGoe(ageGoe);
+        normalized.setAgeLoe(ageLoe);
+        if (normalized.getUsername() != null)
+            normalized.setUsernameMatch(usernameMatch != null ? usernameMatch : UsernameMatch.EXACT);
+        return normalized;
+    }
 }
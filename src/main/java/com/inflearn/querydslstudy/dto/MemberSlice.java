@@ -0,0 +1,29 @@
+package com.inflearn.querydslstudy.dto;
+
+import lombok.Getter;
+import org.springframework.data.domain.Slice;
+
+import java.util.List;
+
+/**
+ * /v5/members 응답. 무한 스크롤에 필요한 값만 담는다. (Page 의 totalElements, pageable, sort 등은 없음)
+ */
+@Getter
+public class MemberSlice {
+
+    private final List<MemberTeamDto> content;
+    private final int page;
+    private final int size;
+    private final boolean hasNext;
+
+    private MemberSlice(List<MemberTeamDto> content, int page, int size, boolean hasNext) {
+        this.content = content;
+        this.page = page;
+        this.size = size;
+        this.hasNext = hasNext;
+    }
+
+    public static MemberSlice of(Slice<MemberTeamDto> slice) {
+        return new MemberSlice(slice.getContent(), slice.getNumber(), slice.getSize(), slice.hasNext());
+    }
+}
@@ -0,0 +1,17 @@
+package com.inflearn.querydslstudy.dto;
+
+import lombok.Data;
+
+@Data
+public class TeamMemberDto {
+
+    private Long memberId;
+    private String username;
+    private Integer age;
+
+    public TeamMemberDto(Long memberId, String username, Integer age) {
+        this.memberId = memberId;
+        this.username = username;
+        this.age = age;
+    }
+}
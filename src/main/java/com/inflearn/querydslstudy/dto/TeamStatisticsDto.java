@@ -0,0 +1,25 @@
+package com.inflearn.querydslstudy.dto;
+
+import lombok.Data;
+
+@Data
+public class TeamStatisticsDto {
+
+    private Long teamId;
+    private String teamName;
+    private long memberCount;
+    private long ageSum;
+    private Double ageAvg;
+    private Integer ageMin;
+    private Integer ageMax;
+
+    public TeamStatisticsDto(Long teamId, String teamName, long memberCount, long ageSum, Double ageAvg, Integer ageMin, Integer ageMax) {
+        this.teamId = teamId;
+        this.teamName = teamName;
+        this.memberCount = memberCount;
+        this.ageSum = ageSum;
+        this.ageAvg = ageAvg;
+        this.ageMin = ageMin;
+        this.ageMax = ageMax;
+    }
+}
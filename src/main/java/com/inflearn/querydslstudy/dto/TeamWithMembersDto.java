@@ -0,0 +1,19 @@
+package com.inflearn.querydslstudy.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class TeamWithMembersDto {
+
+    private Long teamId;
+    private String teamName;
+    private List<TeamMemberDto> members = new ArrayList<>();
+
+    public TeamWithMembersDto(Long teamId, String teamName) {
+        this.teamId = teamId;
+        this.teamName = teamName;
+    }
+}
@@ -0,0 +1,49 @@
+package com.inflearn.querydslstudy.entity;
+
+import com.inflearn.querydslstudy.entity.DataChangedEvent.Type;
+import org.springframework.context.ApplicationEventPublisher;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+/*
+ * 엔티티 변경을 스프링 이벤트로 전달하는 JPA 엔티티 리스너
+ * 스프링 부트가 hibernate 에 SpringBeanContainer 를 등록해주기 때문에 생성자 주입이 가능하다.
+ * bulk 연산(update/delete 절)은 영속성 컨텍스트를 거치지 않아서 여기로 오지 않으므로 호출하는 쪽에서 DataChangedEvent.bulk 를 발행해야 한다.
+ * 엔티티 리스너가 엔티티의 콜백 메소드보다 먼저 호출되므로 Member.syncedState() 는 아직 변경 전 상태이다.
+ */
+public class DataChangeListener {
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    public DataChangeListener(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    @PostPersist
+    public void onInsert(Object entity) {
+        publish(Type.INSERT, entity);
+    }
+
+    @PostUpdate
+    public void onUpdate(Object entity) {
+        publish(Type.UPDATE, entity);
+    }
+
+    @PostRemove
+    public void onDelete(Object entity) {
+        publish(Type.DELETE, entity);
+    }
+
+    private void publish(Type type, Object entity) {
+        MemberState before = null;
+        MemberState after = null;
+        if (entity instanceof Member) {
+            Member member = (Member) entity;
+            before = type == Type.INSERT ? null : member.syncedState();
+            after = type == Type.DELETE ? null : member.currentState();
+        }
+        eventPublisher.publishEvent(new DataChangedEvent(entity.getClass(), type, entity, before, after));
+    }
+}
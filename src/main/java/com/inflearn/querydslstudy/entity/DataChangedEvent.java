@@ -0,0 +1,36 @@
+package com.inflearn.querydslstudy.entity;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Member, Team 에 insert/update/delete 가 발생했을때 발행되는 이벤트
+ * 엔티티 리스너를 거치지 않는 bulk 연산은 어떤 행이 바뀌었는지 모르므로 BULK 로 발행한다.
+ */
+@Getter
+@ToString
+public class DataChangedEvent {
+
+    public enum Type {
+        INSERT, UPDATE, DELETE, BULK
+    }
+
+    private final Class<?> entityType;
+    private final Type type;
+    private final Object entity;
+    // Member 일때만 변경 전/후 상태 (INSERT 의 before, DELETE 의 after 는 null)
+    private final MemberState before;
+    private final MemberState after;
+
+    public DataChangedEvent(Class<?> entityType, Type type, Object entity, MemberState before, MemberState after) {
+        this.entityType = entityType;
+        this.type = type;
+        this.entity = entity;
+        this.before = before;
+        this.after = after;
+    }
+
+    public static DataChangedEvent bulk(Class<?> entityType) {
+        return new DataChangedEvent(entityType, Type.BULK, null, null, null);
+    }
+}
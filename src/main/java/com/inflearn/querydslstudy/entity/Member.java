@@ -7,7 +7,11 @@ import javax.persistence.*;
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @Getter @Setter
 @Entity
-@Table(name = "member")
+@EntityListeners(DataChangeListener.class)
+@Table(name = "member", indexes = {
+        @Index(name = "idx_member_username", columnList = "username"), // username = ?, username like 'x%' 검색용
+        @Index(name = "idx_member_age", columnList = "age") // 나이 조건만 있는 count 를 인덱스만으로 처리
+})
 @ToString(of = {"id", "username", "age"})
 public class Member {
 
@@ -23,6 +27,12 @@ public class Member {
     @JoinColumn(name = "team_id")
     private Team team;
 
+    // 마지막으로 DB 와 맞춰진(load/insert/update) 상태. 변경 이벤트에서 변경 전 값으로 사용한다.
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private MemberState syncedState;
+
     public Member(String username, Integer age, Team team) {
         this.username = username;
         this.age = age;
@@ -42,4 +52,19 @@ public class Member {
         this.team = team;
         team.getMembers().add(this);
     }
+
+    public MemberState syncedState() {
+        return syncedState;
+    }
+
+    public MemberState currentState() {
+        return new MemberState(team != null ? team.getId() : null, age);
+    }
+
+    @PostLoad
+    @PostPersist
+    @PostUpdate
+    void sync() {
+        this.syncedState = currentState();
+    }
 }
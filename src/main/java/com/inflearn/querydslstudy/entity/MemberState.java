@@ -0,0 +1,22 @@
+package com.inflearn.querydslstudy.entity;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 팀별 통계에 영향을 주는 회원 상태 (소속 팀, 나이)
+ */
+@Getter
+@EqualsAndHashCode
+@ToString
+public class MemberState {
+
+    private final Long teamId;
+    private final Integer age;
+
+    public MemberState(Long teamId, Integer age) {
+        this.teamId = teamId;
+        this.age = age;
+    }
+}
@@ -1,6 +1,8 @@
 package com.inflearn.querydslstudy.entity;
 
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 import java.util.ArrayList;
@@ -9,6 +11,9 @@ import java.util.List;
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @Getter @Setter
 @Entity
+@EntityListeners(DataChangeListener.class)
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "team") // cache 프로필에서 2차 캐시를 켰을때만 사용됨
 @Table(name = "team")
 @ToString(of = {"id", "name"})
 public class Team {
@@ -26,4 +31,12 @@ public class Team {
         this.name = name;
     }
 
+    /*
+     * 이름 변경은 dirty checking 으로 update 된다.
+     * 2차 캐시의 엔티티는 READ_WRITE 전략으로 함께 갱신되고, team 테이블의 update timestamp 가 바뀌므로 이름으로 조회한 query cache 도 무효화된다.
+     */
+    public void changeName(String name) {
+        this.name = name;
+    }
+
 }
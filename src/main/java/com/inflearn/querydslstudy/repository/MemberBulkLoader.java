@@ -0,0 +1,158 @@
+package com.inflearn.querydslstudy.repository;
+
+import com.inflearn.querydslstudy.dto.MemberImport;
+import com.inflearn.querydslstudy.entity.DataChangedEvent;
+import com.inflearn.querydslstudy.entity.Member;
+import com.inflearn.querydslstudy.entity.Team;
+import org.hibernate.SessionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.springframework.util.StringUtils.hasText;
+
+/*
+ * 대량 회원 적재용 JDBC batch 경로
+ * Member, Team 은 IDENTITY 전략이라 hibernate 가 insert 를 batch 로 묶지 못하고 em.persist 마다 DB 를 왕복한다.
+ * 여기서는 영속성 컨텍스트를 거치지 않고 JdbcTemplate batchUpdate 로 batchSize 개씩 묶어서 insert 하고,
+ * commitInterval 개마다 트랜잭션을 커밋한다.
+ * 엔티티 리스너를 거치지 않으므로 적재가 끝나면 bulk 변경 이벤트를 직접 발행한다.
+ * hibernate 도 insert 를 모르므로 2차 캐시(cache 프로필)의 team 캐시와 query cache(ex. team-by-name)도 직접 비운다.
+ */
+@Repository
+public class MemberBulkLoader {
+
+    private static final String INSERT_MEMBER = "insert into member (username, age, team_id) values (?, ?, ?)";
+    private static final String INSERT_TEAM = "insert into team (name) values (?)";
+    private static final String SELECT_TEAM = "select min(id) as id, name from team where name in (:names) group by name";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final EntityManagerFactory emf;
+    private final int batchSize;
+    private final int commitInterval;
+
+    public MemberBulkLoader(JdbcTemplate jdbcTemplate,
+                            PlatformTransactionManager transactionManager,
+                            ApplicationEventPublisher eventPublisher,
+                            EntityManagerFactory emf,
+                            @Value("${member.bulk-load.batch-size:1000}") int batchSize,
+                            @Value("${member.bulk-load.commit-interval:10000}") int commitInterval) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+        this.emf = emf;
+        this.batchSize = batchSize;
+        this.commitInterval = Math.max(commitInterval, batchSize);
+    }
+
+    /**
+     * members 는 끝까지 읽지만 닫지는 않는다. (파일 등에서 읽는 stream 은 호출하는 쪽에서 닫는다)
+     * @return 적재한 회원 수
+     */
+    public long load(Stream<MemberImport> members) {
+        long loaded = 0;
+        try {
+            Iterator<MemberImport> iterator = members.iterator();
+            List<MemberImport> chunk = new ArrayList<>(commitInterval);
+            while (iterator.hasNext()) {
+                chunk.add(iterator.next());
+                if (chunk.size() == commitInterval) {
+                    loaded += loadInTransaction(chunk);
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty())
+                loaded += loadInTransaction(chunk);
+        } finally {
+            if (loaded > 0) {
+                evictSecondLevelCache();
+                eventPublisher.publishEvent(DataChangedEvent.bulk(Member.class));
+            }
+        }
+        return loaded;
+    }
+
+    // 2차 캐시를 사용하지 않으면 아무것도 하지 않는다.
+    private void evictSecondLevelCache() {
+        emf.getCache().evict(Team.class);
+        emf.unwrap(SessionFactory.class).getCache().evictQueryRegions();
+    }
+
+    private int loadInTransaction(List<MemberImport> chunk) {
+        transactionTemplate.execute(status -> {
+            for (int from = 0; from < chunk.size(); from += batchSize) {
+                insertBatch(chunk.subList(from, Math.min(from + batchSize, chunk.size())));
+            }
+            return null;
+        });
+        return chunk.size();
+    }
+
+    private void insertBatch(List<MemberImport> batch) {
+        Map<String, Long> teamIds = resolveTeams(batch);
+        jdbcTemplate.batchUpdate(INSERT_MEMBER, batch, batch.size(), (ps, member) -> {
+            ps.setString(1, member.getUsername());
+            if (member.getAge() != null)
+                ps.setInt(2, member.getAge());
+            else
+                ps.setNull(2, Types.INTEGER);
+            Long teamId = hasText(member.getTeamName()) ? teamIds.get(member.getTeamName()) : null;
+            if (teamId != null)
+                ps.setLong(3, teamId);
+            else
+                ps.setNull(3, Types.BIGINT);
+        });
+    }
+
+    /*
+     * batch 에 등장하는 팀 이름을 한번에 조회하고, 없는 팀은 batch insert 후 다시 조회한다. (batch 당 최대 3번 왕복)
+     */
+    private Map<String, Long> resolveTeams(List<MemberImport> batch) {
+        Set<String> names = batch.stream()
+                .map(MemberImport::getTeamName)
+                .filter(name -> hasText(name))
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        if (names.isEmpty())
+            return new HashMap<>();
+
+        Map<String, Long> teamIds = findTeamIds(names);
+        List<String> missing = names.stream()
+                .filter(name -> !teamIds.containsKey(name))
+                .collect(Collectors.toList());
+        if (!missing.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_TEAM, missing, missing.size(), (ps, name) -> ps.setString(1, name));
+            teamIds.putAll(findTeamIds(missing));
+        }
+        return teamIds;
+    }
+
+    private Map<String, Long> findTeamIds(Iterable<String> names) {
+        Map<String, Long> teamIds = new HashMap<>();
+        namedJdbcTemplate.query(SELECT_TEAM, new MapSqlParameterSource("names", names),
+                rs -> {
+                    teamIds.put(rs.getString("name"), rs.getLong("id"));
+                });
+        return teamIds;
+    }
+}
@@ -1,14 +1,20 @@
 package com.inflearn.querydslstudy.repository;
 
 import com.inflearn.querydslstudy.dto.MemberSearchCondition;
+import com.inflearn.querydslstudy.dto.MemberSearchCondition.UsernameMatch;
 import com.inflearn.querydslstudy.dto.MemberTeamDto;
 import com.inflearn.querydslstudy.dto.QMemberTeamDto;
 import com.inflearn.querydslstudy.entity.Member;
+import com.inflearn.querydslstudy.repository.support.MemberQueryMetrics;
+import com.inflearn.querydslstudy.repository.support.SingleFlight;
+import com.inflearn.querydslstudy.repository.support.UsernameIndex;
 import com.querydsl.core.types.dsl.BooleanExpression;
 import com.querydsl.jpa.impl.JPAQueryFactory;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import javax.persistence.EntityManager;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 
@@ -21,37 +27,49 @@ public class MemberJpaRepository {
 
     private final EntityManager em;
     private final JPAQueryFactory queryFactory;
+    private final MemberQueryMetrics metrics;
+    private final SingleFlight singleFlight;
+    private final UsernameIndex usernameIndex;
 
-    public MemberJpaRepository(EntityManager em) {
+    public MemberJpaRepository(EntityManager em, MemberQueryMetrics metrics, SingleFlight singleFlight,
+                               UsernameIndex usernameIndex) {
         this.em = em;
         this.queryFactory = new JPAQueryFactory(em);
+        this.metrics = metrics;
+        this.singleFlight = singleFlight;
+        this.usernameIndex = usernameIndex;
     }
 
     public void save(Member member) {
         em.persist(member);
     }
 
+    @Transactional(readOnly = true)
     public Optional<Member> findById(Long id) {
         Member findMember = em.find(Member.class, id);
         return Optional.ofNullable(findMember);
     }
 
+    @Transactional(readOnly = true)
     public List<Member> findAll() {
         return em.createQuery("select m from Member m", Member.class).getResultList();
     }
 
+    @Transactional(readOnly = true)
     public List<Member> findAllUseQueryDsl() {
         return queryFactory
                 .selectFrom(member)
                 .fetch();
     }
 
+    @Transactional(readOnly = true)
     public List<Member> findByUsername(String username) {
         return em.createQuery("select m from Member m where m.username = :username", Member.class)
                 .setParameter("username", username)
                 .getResultList();
     }
 
+    @Transactional(readOnly = true)
     public List<Member> findByUsernameUseQuerydsl(String username) {
         return queryFactory
                 .selectFrom(member)
@@ -59,29 +77,50 @@ public class MemberJpaRepository {
                 .fetch();
     }
 
+    @Transactional(readOnly = true)
     public List<MemberTeamDto> searchByBuilder(MemberSearchCondition condition) {
-        return queryFactory
-                .select(new QMemberTeamDto(
-                        member.id.as("memberId"),
-                        member.username,
-                        member.age,
-                        team.id.as("teamId"),
-                        team.name.as("teamName")
-                ))
-                .from(member)
-                .leftJoin(member.team, team)
-//                .on(member.age.goe(35))
-                .where(
-                        usernameCondition(condition.getUsername()),
-                        teamNameCondition(condition.getTeamName()),
-                        ageGoeCondition(condition.getAgeGoe()),
-                        ageloeCondition(condition.getAgeLoe())
-                )
-                .fetch();
+        return singleFlight.execute("searchByBuilder", condition, null, () -> metrics.record("searchByBuilder", condition, () -> {
+            Optional<List<Long>> candidateIds = containsCandidates(condition);
+            if (candidateIds.isPresent() && candidateIds.get().isEmpty())
+                return Collections.<MemberTeamDto>emptyList();
+
+            return queryFactory
+                    .select(new QMemberTeamDto(
+                            member.id.as("memberId"),
+                            member.username,
+                            member.age,
+                            team.id.as("teamId"),
+                            team.name.as("teamName")
+                    ))
+                    .from(member)
+                    .leftJoin(member.team, team)
+//                    .on(member.age.goe(35))
+                    .where(
+                            candidateIds.map(member.id::in).orElse(null),
+                            usernameCondition(condition.getUsername(), condition.getUsernameMatch()),
+                            teamNameCondition(condition.getTeamName()),
+                            ageGoeCondition(condition.getAgeGoe()),
+                            ageloeCondition(condition.getAgeLoe())
+                    )
+                    .fetch();
+        }));
+    }
+
+    // 부분 검색은 UsernameIndex 로 후보 id 를 먼저 찾는다. (인덱스를 쓸수 없으면 empty)
+    private Optional<List<Long>> containsCandidates(MemberSearchCondition condition) {
+        if (!hasText(condition.getUsername()) || condition.getUsernameMatch() != UsernameMatch.CONTAINS)
+            return Optional.empty();
+        return usernameIndex.findIdsContaining(condition.getUsername());
     }
 
-    private BooleanExpression usernameCondition(String username) {
-        return hasText(username) ? member.username.eq(username) : null;
+    private BooleanExpression usernameCondition(String username, UsernameMatch match) {
+        if (!hasText(username))
+            return null;
+        if (match == UsernameMatch.PREFIX)
+            return member.username.startsWith(username);
+        if (match == UsernameMatch.CONTAINS)
+            return member.username.contains(username);
+        return member.username.eq(username);
     }
 
     private BooleanExpression teamNameCondition(String teamName) {
@@ -3,9 +3,11 @@ package com.inflearn.querydslstudy.repository;
 import com.inflearn.querydslstudy.entity.Member;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.querydsl.QuerydslPredicateExecutor;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
 public interface MemberRepository extends JpaRepository<Member, Long>, MemberRepositoryCustom, QuerydslPredicateExecutor<Member> {
+    @Transactional(readOnly = true)
     List<Member> findByUsername(String username);
 }
@@ -1,11 +1,14 @@
 package com.inflearn.querydslstudy.repository;
 
+import com.inflearn.querydslstudy.dto.MemberCursorPage;
 import com.inflearn.querydslstudy.dto.MemberSearchCondition;
 import com.inflearn.querydslstudy.dto.MemberTeamDto;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface MemberRepositoryCustom {
 
@@ -14,4 +17,33 @@ public interface MemberRepositoryCustom {
     Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable);
 
     Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable);
+
+    /**
+     * searchPageComplex 와 같은 결과를 content 쿼리와 count 쿼리를 동시에 실행해서 가져온다.
+     * 각 쿼리는 별도 커넥션의 읽기 전용 트랜잭션에서 실행되므로 호출한 트랜잭션에서 커밋하지 않은 변경은 보이지 않는다.
+     */
+    Page<MemberTeamDto> searchPageParallel(MemberSearchCondition condition, Pageable pageable);
+
+    /**
+     * count 쿼리 없이 size + 1 개를 조회해서 다음 페이지 존재 여부만 알려준다. 정렬은 searchPageComplex 와 같다.
+     */
+    Slice<MemberTeamDto> searchSlice(MemberSearchCondition condition, Pageable pageable);
+
+    MemberCursorPage searchAfter(MemberSearchCondition condition, Long lastMemberId, int size);
+
+    /**
+     * forward-only 커서로 한 행씩 읽어오는 검색. 트랜잭션 안에서 호출하고 사용이 끝나면 반드시 close 해야 한다.
+     */
+    Stream<MemberTeamDto> searchStream(MemberSearchCondition condition, int fetchSize);
+
+    /*
+     * 검색 조건에 해당하는 회원을 엔티티 조회 없이 update/delete 절로 한번에 변경한다.
+     * id 범위를 나눠서(chunk) 실행하며, 실행 전에 flush 하고 실행 후에는 영속성 컨텍스트를 clear 한다.
+     * 반환값은 변경된 회원 수
+     */
+    long bulkAddAge(MemberSearchCondition condition, int delta);
+
+    long bulkMoveToTeam(MemberSearchCondition condition, Long teamId);
+
+    long bulkDelete(MemberSearchCondition condition);
 }
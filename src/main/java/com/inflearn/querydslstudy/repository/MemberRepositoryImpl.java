@@ -1,19 +1,56 @@
 package com.inflearn.querydslstudy.repository;
 
+import com.inflearn.querydslstudy.config.QueryCounter;
+import com.inflearn.querydslstudy.config.ReplicaRoutingDataSource;
+import com.inflearn.querydslstudy.dto.MemberCursorPage;
 import com.inflearn.querydslstudy.dto.MemberSearchCondition;
+import com.inflearn.querydslstudy.dto.MemberSearchCondition.UsernameMatch;
 import com.inflearn.querydslstudy.dto.MemberTeamDto;
 import com.inflearn.querydslstudy.dto.QMemberTeamDto;
+import com.inflearn.querydslstudy.entity.DataChangedEvent;
 import com.inflearn.querydslstudy.entity.Member;
-import com.querydsl.core.QueryResults;
+import com.inflearn.querydslstudy.entity.Team;
+import com.inflearn.querydslstudy.repository.support.MemberColumnIndex;
+import com.inflearn.querydslstudy.repository.support.MemberCountCache;
+import com.inflearn.querydslstudy.repository.support.MemberQueryMetrics;
+import com.inflearn.querydslstudy.repository.support.MemberSearchTemplates;
+import com.inflearn.querydslstudy.repository.support.MemberSearchTemplates.Kind;
+import com.inflearn.querydslstudy.repository.support.SingleFlight;
+import com.mysema.commons.lang.CloseableIterator;
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.ExpressionUtils;
+import com.querydsl.core.types.Predicate;
 import com.querydsl.core.types.dsl.BooleanExpression;
-import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.JPAExpressions;
+import com.querydsl.jpa.impl.JPAUpdateClause;
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.annotations.QueryHints;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
-import org.springframework.data.repository.support.PageableExecutionUtils;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import javax.persistence.EntityManager;
+import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static com.inflearn.querydslstudy.entity.QMember.member;
 import static com.inflearn.querydslstudy.entity.QTeam.team;
@@ -22,35 +59,150 @@ import static org.springframework.util.StringUtils.hasText;
 public class MemberRepositoryImpl implements MemberRepositoryCustom {
 
     private final JPAQueryFactory queryFactory;
+    private final MemberCountCache countCache;
+    private final MemberSearchTemplates searchTemplates;
+    private final Executor queryExecutor;
+    private final TransactionTemplate readOnlyTransaction;
+    private final MemberQueryMetrics metrics;
+    private final SingleFlight singleFlight;
+    private final MemberColumnIndex columnIndex;
+    private final EntityManager em;
+    private final TransactionTemplate transaction;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int bulkChunkSize;
 
-    public MemberRepositoryImpl(JPAQueryFactory queryFactory) {
+    public MemberRepositoryImpl(JPAQueryFactory queryFactory,
+                                MemberCountCache countCache,
+                                MemberSearchTemplates searchTemplates,
+                                @Qualifier("memberQueryExecutor") Executor queryExecutor,
+                                PlatformTransactionManager transactionManager,
+                                MemberQueryMetrics metrics,
+                                SingleFlight singleFlight,
+                                MemberColumnIndex columnIndex,
+                                EntityManager em,
+                                ApplicationEventPublisher eventPublisher,
+                                @Value("${member.bulk.chunk-size:10000}") int bulkChunkSize) {
         this.queryFactory = queryFactory;
+        this.countCache = countCache;
+        this.searchTemplates = searchTemplates;
+        this.queryExecutor = queryExecutor;
+        this.metrics = metrics;
+        this.singleFlight = singleFlight;
+        this.columnIndex = columnIndex;
+        this.em = em;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+        this.bulkChunkSize = bulkChunkSize;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.readOnlyTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<MemberTeamDto> search(MemberSearchCondition condition) {
-        return queryFactory
-                .select(new QMemberTeamDto(
-                        member.id.as("memberId"),
-                        member.username,
-                        member.age,
-                        team.id.as("teamId"),
-                        team.name.as("teamName")
-                ))
-                .from(member)
-                .leftJoin(member.team, team)
-                .where(
-                        usernameCondition(condition.getUsername()),
-                        teamNameCondition(condition.getTeamName()),
-                        ageGoeCondition(condition.getAgeGoe()),
-                        ageloeCondition(condition.getAgeLoe())
-                )
-                .fetch();
+        return metrics.record("search", condition, () -> searchTemplates.fetch(condition, Kind.CONTENT));
     }
 
+    /*
+     * 검색 쿼리는 조건 모양별로 미리 컴파일해둔 템플릿(MemberSearchTemplates)을 사용하고 파라미터만 바인딩한다.
+     * fetchResults() 와 같이 count 를 먼저 실행하고 결과가 있을때만 content 를 조회한다.
+     */
     @Override
+    @Transactional(readOnly = true)
     public Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable) {
-        QueryResults<MemberTeamDto> results = queryFactory
+        return metrics.record("searchPageSimple", condition, () -> {
+            long total = searchTemplates.count(condition);
+            List<MemberTeamDto> content = total > 0
+                    ? searchTemplates.fetch(condition, Kind.CONTENT, pageable.getOffset(), pageable.getPageSize())
+                    : Collections.<MemberTeamDto>emptyList();
+            return new PageImpl<>(content, pageable, total);
+        });
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable) {
+        // 동시에 들어온 같은 조건/페이지 검색은 한번만 실행한다.
+        return singleFlight.execute("searchPageComplex", condition, pageable, () -> metrics.record("searchPageComplex", condition, () -> {
+            // 나이/팀 조건만 있으면 컬럼 인덱스에서 페이지 id 와 전체 건수를 구하고 count 쿼리 없이 해당 row 만 조회한다.
+            // (인덱스 조회와 row 조회 사이에 삭제된 회원은 페이지에서 빠질수 있다)
+            Optional<MemberColumnIndex.Result> indexed = columnIndex.search(condition, pageable.getOffset(), pageable.getPageSize());
+            if (indexed.isPresent())
+                return new PageImpl<>(searchTemplates.fetchByIds(indexed.get().getIds()), pageable, indexed.get().getTotal());
+
+            // content 만 가져옴. 정렬은 member.id asc, member.username desc
+            List<MemberTeamDto> contents = searchTemplates.fetch(condition, Kind.CONTENT_ORDERED, pageable.getOffset(), pageable.getPageSize());
+
+            return metrics.getPage("searchPageComplex", contents, pageable, () -> countCache.getOrCompute(condition, () -> searchTemplates.count(condition)));
+        }));
+        // getPage에서 content와 pageable의 totalsize를 보고 첫번째페이지나 마지막페이지이면 카운트쿼리메소드를 호출을 안함. 최적화 !
+        // contents 사이즈가 page 사이즈보다 작을경우 count 쿼리를 날릴 필요없이 content 사이즈를 리턴하면 된다. 이런경우 카운트쿼리를 실행하지 않음 !
+        // 중간 페이지의 count 는 같은 조건이면 데이터가 바뀌기 전까지 캐시된 값을 사용한다.
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Slice<MemberTeamDto> searchSlice(MemberSearchCondition condition, Pageable pageable) {
+        return metrics.record("searchSlice", condition, () -> {
+            // 다음 페이지 존재 여부를 알기 위해 한개 더 조회
+            List<MemberTeamDto> rows = searchTemplates.fetch(condition, Kind.CONTENT_ORDERED, pageable.getOffset(), pageable.getPageSize() + 1);
+            boolean hasNext = rows.size() > pageable.getPageSize();
+            return new SliceImpl<>(hasNext ? rows.subList(0, pageable.getPageSize()) : rows, pageable, hasNext);
+        });
+    }
+
+    /*
+     * content 와 count 를 각각 memberQueryExecutor 에서 동시에 실행하므로 응답 시간은 두 쿼리의 합이 아니라 느린 쪽이 된다.
+     * count 가 필요없는 경우(첫/마지막 페이지) getPage 가 count supplier 를 호출하지 않으면 count 는 취소한다.
+     * 아직 실행 대기중이었다면 실행되지 않는다. 캐시된 count 가 있으면 count 쿼리는 아예 띄우지 않는다.
+     */
+    @Override
+    public Page<MemberTeamDto> searchPageParallel(MemberSearchCondition condition, Pageable pageable) {
+        return metrics.record("searchPageParallel", condition, () -> doSearchPageParallel(condition, pageable));
+    }
+
+    private Page<MemberTeamDto> doSearchPageParallel(MemberSearchCondition condition, Pageable pageable) {
+        Long cachedCount = countCache.getIfPresent(condition);
+        CompletableFuture<Long> countFuture = cachedCount != null
+                ? CompletableFuture.completedFuture(cachedCount)
+                : supplyReadOnly(() -> countCache.getOrCompute(condition, () -> searchTemplates.count(condition)));
+        CompletableFuture<List<MemberTeamDto>> contentFuture =
+                supplyReadOnly(() -> searchTemplates.fetch(condition, Kind.CONTENT_ORDERED, pageable.getOffset(), pageable.getPageSize()));
+
+        try {
+            List<MemberTeamDto> contents = join(contentFuture);
+            return metrics.getPage("searchPageParallel", contents, pageable, () -> join(countFuture));
+        } finally {
+            countFuture.cancel(false);
+        }
+    }
+
+    private <T> CompletableFuture<T> supplyReadOnly(Supplier<T> query) {
+        Supplier<T> task = QueryCounter.wrap(() -> readOnlyTransaction.execute(status -> query.get()));
+        return CompletableFuture.supplyAsync(ReplicaRoutingDataSource.wrap(task), queryExecutor);
+    }
+
+    private <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+
+    /*
+     * offset 대신 마지막으로 조회한 member.id 이후부터 seek 하는 방식 (keyset pagination)
+     * id 가 유일하기 때문에 (id asc, username desc) 정렬은 id 기준으로만 seek 해도 searchPageComplex 와 순서가 같다.
+     * 페이지 깊이와 상관없이 인덱스(PK)로 바로 시작 위치를 찾기 때문에 조회 속도가 일정하다.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public MemberCursorPage searchAfter(MemberSearchCondition condition, Long lastMemberId, int size) {
+        // 한개 더 조회한 row 를 잘라낸 뒤의 건수를 기록한다.
+        return metrics.record("searchAfter", condition, () -> MemberCursorPage.of(queryFactory
                 .select(new QMemberTeamDto(
                         member.id.as("memberId"),
                         member.username,
@@ -61,23 +213,26 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom {
                 .from(member)
                 .leftJoin(member.team, team)
                 .where(
-                        usernameCondition(condition.getUsername()),
+                        memberIdGt(lastMemberId),
+                        usernameCondition(condition.getUsername(), condition.getUsernameMatch()),
                         teamNameCondition(condition.getTeamName()),
                         ageGoeCondition(condition.getAgeGoe()),
                         ageloeCondition(condition.getAgeLoe())
                 )
-                .offset(pageable.getOffset()) // 몇번째부터 시작
-                .limit(pageable.getPageSize()) // 몇개까지
-                .fetchResults();
-
-        List<MemberTeamDto> content = results.getResults();
-        long total = results.getTotal();
-        return new PageImpl<>(content, pageable, total);
+                .orderBy(member.id.asc(), member.username.desc())
+                .limit(size + 1) // 다음 페이지 존재 여부를 알기 위해 한개 더 조회
+                .fetch(), size));
     }
 
+    /*
+     * fetch() 는 결과 전체를 List 로 메모리에 올리기 때문에 대량 조회시 OOM 이 발생할 수 있다.
+     * iterate() 는 hibernate ScrollableResults(FORWARD_ONLY) 를 사용하므로 fetchSize 만큼씩 읽어오고,
+     * DTO 로 조회하기 때문에 영속성 컨텍스트에도 쌓이지 않는다.
+     */
     @Override
-    public Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable) {
-        List<MemberTeamDto> contents = queryFactory
+    @Transactional(readOnly = true)
+    public Stream<MemberTeamDto> searchStream(MemberSearchCondition condition, int fetchSize) {
+        CloseableIterator<MemberTeamDto> iterator = queryFactory
                 .select(new QMemberTeamDto(
                         member.id.as("memberId"),
                         member.username,
@@ -88,35 +243,113 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom {
                 .from(member)
                 .leftJoin(member.team, team)
                 .where(
-                        usernameCondition(condition.getUsername()),
+                        usernameCondition(condition.getUsername(), condition.getUsernameMatch()),
                         teamNameCondition(condition.getTeamName()),
                         ageGoeCondition(condition.getAgeGoe()),
                         ageloeCondition(condition.getAgeLoe())
                 )
-                .orderBy(member.id.asc(), member.username.desc())
-                .offset(pageable.getOffset()) // 몇번째부터 시작
-                .limit(pageable.getPageSize()) // 몇개까지
-                .fetch(); // content 만 가져옴
+                .orderBy(member.id.asc())
+                .setHint(QueryHints.FETCH_SIZE, fetchSize)
+                .setHint(QueryHints.READ_ONLY, true)
+                .iterate();
 
-        JPAQuery<Member> countQuery = queryFactory
-                .select(member)
-                .from(member)
-                .leftJoin(member.team, team)
-                .where(
-                        usernameCondition(condition.getUsername()),
-                        teamNameCondition(condition.getTeamName()),
-                        ageGoeCondition(condition.getAgeGoe()),
-                        ageloeCondition(condition.getAgeLoe())
-                );
+        return StreamSupport
+                .stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(iterator::close);
+    }
 
-//        return new PageImpl<>(contents, pageable, countQuery.fetchCount());
-        return PageableExecutionUtils.getPage(contents, pageable, countQuery::fetchCount);
-        // getPage에서 content와 pageable의 totalsize를 보고 첫번째페이지나 마지막페이지이면 카운트쿼리메소드를 호출을 안함. 최적화 !
-        // contents 사이즈가 page 사이즈보다 작을경우 count 쿼리를 날릴 필요없이 content 사이즈를 리턴하면 된다. 이런경우 카운트쿼리를 실행하지 않음 !
+    @Override
+    public long bulkAddAge(MemberSearchCondition condition, int delta) {
+        return bulkUpdate(condition, update -> update.set(member.age, member.age.add(delta)));
+    }
+
+    @Override
+    public long bulkMoveToTeam(MemberSearchCondition condition, Long teamId) {
+        if (teamId == null)
+            return bulkUpdate(condition, update -> update.setNull(member.team));
+        return bulkUpdate(condition, update -> update.set(member.team, em.getReference(Team.class, teamId)));
+    }
+
+    @Override
+    public long bulkDelete(MemberSearchCondition condition) {
+        return bulkExecute(condition, range -> queryFactory
+                .delete(member)
+                .where(range)
+                .execute());
+    }
+
+    private long bulkUpdate(MemberSearchCondition condition, Function<JPAUpdateClause, JPAUpdateClause> setter) {
+        return bulkExecute(condition, range -> setter.apply(queryFactory.update(member))
+                .where(range)
+                .execute());
+    }
+
+    /*
+     * 조건에 맞는 id 의 최소/최대 값을 구하고, bulkChunkSize 범위씩 잘라서 실행한다.
+     * chunk 마다 트랜잭션을 사용하므로(REQUIRED) 호출한 쪽에 트랜잭션이 없으면 chunk 단위로 커밋되어 lock, undo 가 커지지 않는다.
+     * bulk 연산은 영속성 컨텍스트를 무시하고 DB 에 바로 실행되므로 실행 전에 flush, 실행 후에 clear 한다.
+     * 엔티티 리스너를 거치지 않으므로 마지막에 bulk 변경 이벤트를 발행한다. (count 캐시, 팀 통계 갱신)
+     */
+    private long bulkExecute(MemberSearchCondition condition, Function<Predicate, Long> clause) {
+        Predicate predicate = bulkCondition(condition);
+        Tuple range = transaction.execute(status -> {
+            em.flush();
+            return queryFactory
+                    .select(member.id.min(), member.id.max())
+                    .from(member)
+                    .where(predicate)
+                    .fetchOne();
+        });
+        Long minId = range == null ? null : range.get(member.id.min());
+        Long maxId = range == null ? null : range.get(member.id.max());
+        if (minId == null || maxId == null)
+            return 0;
+
+        long affected = 0;
+        try {
+            for (long start = minId; start <= maxId; start += bulkChunkSize) {
+                long from = start;
+                long to = Math.min(start + bulkChunkSize - 1, maxId);
+                affected += transaction.execute(status -> {
+                    long count = clause.apply(ExpressionUtils.allOf(predicate, member.id.between(from, to)));
+                    em.clear();
+                    return count;
+                });
+            }
+        } finally {
+            if (affected > 0)
+                eventPublisher.publishEvent(DataChangedEvent.bulk(Member.class));
+        }
+        return affected;
+    }
+
+    /*
+     * update/delete 절에는 join 을 사용할 수 없으므로 teamName 조건은 서브쿼리로 바꾼다.
+     */
+    private Predicate bulkCondition(MemberSearchCondition condition) {
+        return ExpressionUtils.allOf(
+                usernameCondition(condition.getUsername(), condition.getUsernameMatch()),
+                hasText(condition.getTeamName())
+                        ? member.team.id.in(JPAExpressions.select(team.id).from(team).where(team.name.eq(condition.getTeamName())))
+                        : null,
+                ageGoeCondition(condition.getAgeGoe()),
+                ageloeCondition(condition.getAgeLoe())
+        );
+    }
+
+    private BooleanExpression memberIdGt(Long lastMemberId) {
+        return lastMemberId != null ? member.id.gt(lastMemberId) : null;
     }
 
-    private BooleanExpression usernameCondition(String username) {
-        return hasText(username) ? member.username.eq(username) : null;
+    // startsWith/contains 는 값을 'x%', '%x%' 로 이스케이프해서 바인딩한다. (like ? escape '!')
+    private BooleanExpression usernameCondition(String username, UsernameMatch match) {
+        if (!hasText(username))
+            return null;
+        if (match == UsernameMatch.PREFIX)
+            return member.username.startsWith(username);
+        if (match == UsernameMatch.CONTAINS)
+            return member.username.contains(username);
+        return member.username.eq(username);
     }
 
     private BooleanExpression teamNameCondition(String teamName) {
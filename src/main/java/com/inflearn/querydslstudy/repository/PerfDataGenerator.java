@@ -0,0 +1,212 @@
+package com.inflearn.querydslstudy.repository;
+
+import com.inflearn.querydslstudy.config.PerfDataProperties;
+import com.inflearn.querydslstudy.entity.DataChangedEvent;
+import com.inflearn.querydslstudy.entity.Member;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+ * 성능 확인용 대량 데이터 생성 (perf 프로필, InitPerfData)
+ * 팀 크기는 zipf, 나이는 한쪽으로 치우치게, 이름은 일부를 중복되게 만든다. 분포는 PerfDataProperties 참고.
+ *
+ * id 를 직접 지정해서 insert 하므로 chunk 들을 여러 스레드에서 각자의 트랜잭션으로 동시에 적재할 수 있다.
+ * (MemberBulkLoader 는 IDENTITY 로 id 를 받고 팀 이름으로 id 를 조회해야 해서 순서대로 적재한다.)
+ * chunk 마다 seed 와 chunk 번호로 난수를 만들기 때문에 스레드 수가 달라도 같은 데이터가 나온다.
+ * 적재가 끝나면 identity 를 마지막 id 다음으로 옮기고 bulk 변경 이벤트를 한번만 발행한다.
+ * (bulk 이벤트를 받으면 팀 통계, 인덱스 모두 전체를 다시 읽으므로 Team/Member 각각 발행하면 두번 읽게 된다)
+ */
+@Slf4j
+@Repository
+public class PerfDataGenerator {
+
+    private static final String INSERT_TEAM = "insert into team (id, name) values (?, ?)";
+    private static final String INSERT_MEMBER = "insert into member (id, username, age, team_id) values (?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public PerfDataGenerator(JdbcTemplate jdbcTemplate,
+                             PlatformTransactionManager transactionManager,
+                             ApplicationEventPublisher eventPublisher) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * 기존 데이터 뒤에 이어서 적재한다.
+     *
+     * @return 적재한 회원 수
+     */
+    public long generate(PerfDataProperties properties) {
+        long start = System.nanoTime();
+        long teamBase = maxId("team");
+        long memberBase = maxId("member");
+
+        insertTeams(properties, teamBase);
+        long loaded = 0;
+        try {
+            loaded = insertMembers(properties, teamBase, memberBase);
+        } finally {
+            restartIdentity("team", teamBase + properties.getTeams() + 1);
+            // 실패해도 일부 chunk 는 커밋되었을 수 있으므로 예약한 id 범위 다음으로 옮긴다.
+            restartIdentity("member", memberBase + properties.getMembers() + 1);
+            eventPublisher.publishEvent(DataChangedEvent.bulk(Member.class));
+        }
+
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        log.info("generated {} teams, {} members in {}ms ({} rows/s)", properties.getTeams(), loaded, elapsedMillis,
+                elapsedMillis == 0 ? loaded : loaded * 1000 / elapsedMillis);
+        return loaded;
+    }
+
+    private void insertTeams(PerfDataProperties properties, long teamBase) {
+        int batchSize = properties.getBatchSize();
+        transactionTemplate.execute(status -> {
+            for (int from = 0; from < properties.getTeams(); from += batchSize) {
+                int first = from;
+                int size = Math.min(batchSize, properties.getTeams() - from);
+                jdbcTemplate.batchUpdate(INSERT_TEAM, new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        ps.setLong(1, teamBase + first + i + 1);
+                        ps.setString(2, "team" + (first + i));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return size;
+                    }
+                });
+            }
+            return null;
+        });
+    }
+
+    private long insertMembers(PerfDataProperties properties, long teamBase, long memberBase) {
+        ZipfSampler teamSampler = new ZipfSampler(properties.getTeams(), properties.getTeamSkew());
+        ZipfSampler usernameSampler = new ZipfSampler(properties.getCommonUsernames(), properties.getUsernameSkew());
+        int chunkSize = properties.getChunkSize();
+        long chunks = (properties.getMembers() + chunkSize - 1) / chunkSize;
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, properties.getThreads()));
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (long chunk = 0; chunk < chunks; chunk++) {
+                long first = chunk * chunkSize;
+                int size = (int) Math.min(chunkSize, properties.getMembers() - first);
+                long chunkSeed = properties.getSeed() + chunk * 0x9E3779B97F4A7C15L;
+                futures.add(executor.submit(() -> insertChunk(properties, teamSampler, usernameSampler,
+                        new SplittableRandom(chunkSeed), teamBase, memberBase + first, size)));
+            }
+
+            long loaded = 0;
+            for (Future<Integer> future : futures)
+                loaded += future.get();
+            return loaded;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("perf data generation interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("perf data generation failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private int insertChunk(PerfDataProperties properties, ZipfSampler teamSampler, ZipfSampler usernameSampler,
+                            SplittableRandom random, long teamBase, long idBase, int size) {
+        String[] usernames = new String[size];
+        int[] ages = new int[size];
+        long[] teamIds = new long[size];
+        int ageRange = properties.getMaxAge() - properties.getMinAge() + 1;
+        for (int i = 0; i < size; i++) {
+            usernames[i] = random.nextDouble() < properties.getDuplicateUsernameRate()
+                    ? "user" + usernameSampler.sample(random)
+                    : "member" + (idBase + i + 1);
+            ages[i] = properties.getMinAge()
+                    + Math.min(ageRange - 1, (int) (ageRange * Math.pow(random.nextDouble(), properties.getAgeSkew())));
+            teamIds[i] = random.nextDouble() < properties.getNoTeamRate() ? 0 : teamBase + teamSampler.sample(random) + 1;
+        }
+
+        int batchSize = properties.getBatchSize();
+        transactionTemplate.execute(status -> {
+            for (int from = 0; from < size; from += batchSize) {
+                int first = from;
+                int batch = Math.min(batchSize, size - from);
+                jdbcTemplate.batchUpdate(INSERT_MEMBER, new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        int row = first + i;
+                        ps.setLong(1, idBase + row + 1);
+                        ps.setString(2, usernames[row]);
+                        ps.setInt(3, ages[row]);
+                        if (teamIds[row] != 0)
+                            ps.setLong(4, teamIds[row]);
+                        else
+                            ps.setNull(4, Types.BIGINT);
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return batch;
+                    }
+                });
+            }
+            return null;
+        });
+        return size;
+    }
+
+    private long maxId(String table) {
+        Long max = jdbcTemplate.queryForObject("select max(id) from " + table, Long.class);
+        return max != null ? max : 0;
+    }
+
+    // H2 문법. id 를 직접 넣었으므로 이후 persist 가 같은 id 를 받지 않도록 한다.
+    private void restartIdentity(String table, long next) {
+        jdbcTemplate.execute("alter table " + table + " alter column id restart with " + next);
+    }
+
+    /*
+     * 0 ~ n-1 을 1/(rank+1)^exponent 비율로 뽑는다. (누적 분포 이진 탐색)
+     */
+    static class ZipfSampler {
+        private final double[] cumulative;
+
+        ZipfSampler(int n, double exponent) {
+            cumulative = new double[Math.max(1, n)];
+            double sum = 0;
+            for (int i = 0; i < cumulative.length; i++) {
+                sum += 1 / Math.pow(i + 1, exponent);
+                cumulative[i] = sum;
+            }
+            for (int i = 0; i < cumulative.length; i++)
+                cumulative[i] /= sum;
+        }
+
+        int sample(SplittableRandom random) {
+            int index = Arrays.binarySearch(cumulative, random.nextDouble());
+            return Math.min(index >= 0 ? index : -index - 1, cumulative.length - 1);
+        }
+    }
+}
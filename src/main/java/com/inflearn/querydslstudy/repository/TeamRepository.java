@@ -0,0 +1,18 @@
+package com.inflearn.querydslstudy.repository;
+
+import com.inflearn.querydslstudy.entity.Team;
+import org.hibernate.annotations.QueryHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import javax.persistence.QueryHint;
+import java.util.List;
+
+public interface TeamRepository extends JpaRepository<Team, Long>, TeamRepositoryCustom {
+
+    // 2차 캐시가 켜져 있으면 결과(team id 목록)를 query cache 에 저장한다.
+    @org.springframework.data.jpa.repository.QueryHints({
+            @QueryHint(name = QueryHints.CACHEABLE, value = "true"),
+            @QueryHint(name = QueryHints.CACHE_REGION, value = "team-by-name")
+    })
+    List<Team> findByName(String name);
+}
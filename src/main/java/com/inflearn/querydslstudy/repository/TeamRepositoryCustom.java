@@ -0,0 +1,10 @@
+package com.inflearn.querydslstudy.repository;
+
+import com.inflearn.querydslstudy.dto.TeamWithMembersDto;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+public interface TeamRepositoryCustom {
+
+    Page<TeamWithMembersDto> findTeamsWithMembers(Pageable pageable);
+}
@@ -0,0 +1,72 @@
+package com.inflearn.querydslstudy.repository;
+
+import com.inflearn.querydslstudy.dto.TeamMemberDto;
+import com.inflearn.querydslstudy.dto.TeamWithMembersDto;
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.Projections;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.repository.support.PageableExecutionUtils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.inflearn.querydslstudy.entity.QMember.member;
+import static com.inflearn.querydslstudy.entity.QTeam.team;
+
+public class TeamRepositoryImpl implements TeamRepositoryCustom {
+
+    private final JPAQueryFactory queryFactory;
+    private final int memberBatchSize;
+
+    public TeamRepositoryImpl(JPAQueryFactory queryFactory,
+                              @Value("${team.members.batch-size:100}") int memberBatchSize) {
+        this.queryFactory = queryFactory;
+        this.memberBatchSize = memberBatchSize;
+    }
+
+    /*
+     * 컬렉션(team.members)을 fetch join 하면서 페이징하면 hibernate 가 전체를 메모리에 올려서 페이징하므로 사용하지 않는다.
+     * 1. 팀만 페이징해서 조회
+     * 2. (필요할때만) count
+     * 3. 페이지의 팀 id 로 회원을 in 쿼리로 한번에(batch 크기씩) 조회해서 메모리에서 팀별로 묶는다.
+     * 쿼리 수는 페이지 크기와 상관없이 2~3번이다. (페이지 크기가 batch 크기보다 크면 batch 마다 한번씩)
+     */
+    @Override
+    public Page<TeamWithMembersDto> findTeamsWithMembers(Pageable pageable) {
+        List<Tuple> teams = queryFactory
+                .select(team.id, team.name)
+                .from(team)
+                .orderBy(team.id.asc())
+                .offset(pageable.getOffset())
+                .limit(pageable.getPageSize())
+                .fetch();
+
+        Map<Long, TeamWithMembersDto> content = new LinkedHashMap<>();
+        for (Tuple tuple : teams) {
+            Long teamId = tuple.get(team.id);
+            content.put(teamId, new TeamWithMembersDto(teamId, tuple.get(team.name)));
+        }
+
+        List<Long> teamIds = new ArrayList<>(content.keySet());
+        for (int from = 0; from < teamIds.size(); from += memberBatchSize) {
+            List<Long> batch = teamIds.subList(from, Math.min(from + memberBatchSize, teamIds.size()));
+            List<Tuple> members = queryFactory
+                    .select(member.team.id, Projections.constructor(TeamMemberDto.class, member.id, member.username, member.age))
+                    .from(member)
+                    .where(member.team.id.in(batch))
+                    .orderBy(member.id.asc())
+                    .fetch();
+            for (Tuple tuple : members) {
+                content.get(tuple.get(member.team.id)).getMembers().add(tuple.get(1, TeamMemberDto.class));
+            }
+        }
+
+        return PageableExecutionUtils.getPage(new ArrayList<>(content.values()), pageable,
+                () -> queryFactory.select(team.id).from(team).fetchCount());
+    }
+}
@@ -0,0 +1,39 @@
+package com.inflearn.querydslstudy.repository.support;
+
+import com.inflearn.querydslstudy.entity.DataChangedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Member/Team 데이터가 바뀔때마다 증가하는 버전. 캐시된 결과가 유효한지 판단하는 기준으로 사용한다.
+ * 이 인스턴스에서 발생한 변경 이벤트로만 올라가므로 애플리케이션을 한대로 띄울때만 유효하다.
+ */
+@Component
+public class DataVersion {
+
+    private final AtomicLong version = new AtomicLong();
+
+    public long current() {
+        return version.get();
+    }
+
+    public void bump() {
+        version.incrementAndGet();
+    }
+
+    // 변경 시점에 한번 올리고
+    @EventListener
+    public void onChange(DataChangedEvent event) {
+        bump();
+    }
+
+    // 트랜잭션이 끝난 뒤(commit/rollback) 한번 더 올려서 커밋 전에 다른 트랜잭션이 캐시한 값도 무효화한다.
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMPLETION)
+    public void afterCompletion(DataChangedEvent event) {
+        bump();
+    }
+}
@@ -0,0 +1,202 @@
+package com.inflearn.querydslstudy.repository.support;
+
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.ExpressionException;
+import com.querydsl.core.types.FactoryExpressionBase;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.Visitor;
+import lombok.EqualsAndHashCode;
+import lombok.RequiredArgsConstructor;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/*
+ * Projections.bean/fields 대신 사용할 수 있는 projection
+ * Projections.bean/fields 는 row 마다 리플렉션(Method.invoke, Field.set)으로 값을 넣지만,
+ * 여기서는 DTO 클래스와 프로퍼티 목록별로 생성자/setter 를 LambdaMetafactory 로 한번만 바인딩해두고 재사용한다.
+ * 바인딩된 람다는 일반 메소드 호출과 같으므로 @QueryProjection 생성자 호출과 비슷한 속도가 나온다.
+ * - 프로퍼티 이름은 Projections.bean 과 같이 alias(as) 가 있으면 alias, 없으면 path 이름을 사용한다.
+ * - public 기본 생성자가 필요하다. setter 가 없는 프로퍼티는 필드에 직접 넣는다. (MethodHandle)
+ * - null 값은 Projections.bean 과 같이 넣지 않는다. (primitive 필드는 기본값 유지)
+ */
+public final class FastProjections {
+
+    private static final MethodHandles.Lookup lookup = MethodHandles.lookup();
+    private static final Map<MapperKey, RowMapper<?>> mappers = new ConcurrentHashMap<>();
+
+    private FastProjections() {
+    }
+
+    public static <T> FastBean<T> bean(Class<? extends T> type, Expression<?>... exprs) {
+        List<String> properties = new ArrayList<>(exprs.length);
+        List<Expression<?>> args = new ArrayList<>(exprs.length);
+        for (Expression<?> expr : exprs) {
+            if (expr instanceof Operation && ((Operation<?>) expr).getOperator() == Ops.ALIAS) {
+                Operation<?> alias = (Operation<?>) expr;
+                properties.add(((Path<?>) alias.getArg(1)).getMetadata().getName());
+                args.add(alias.getArg(0));
+            } else if (expr instanceof Path) {
+                properties.add(((Path<?>) expr).getMetadata().getName());
+                args.add(expr);
+            } else {
+                throw new IllegalArgumentException("Unsupported expression " + expr + ", use as(alias)");
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        RowMapper<T> mapper = (RowMapper<T>) mappers.computeIfAbsent(new MapperKey(type, properties),
+                key -> createMapper(key.type, key.properties));
+        return new FastBean<>(type, Collections.unmodifiableList(args), mapper);
+    }
+
+    static int cachedMapperCount() {
+        return mappers.size();
+    }
+
+    public static class FastBean<T> extends FactoryExpressionBase<T> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<Expression<?>> args;
+        private final RowMapper<T> mapper;
+
+        private FastBean(Class<? extends T> type, List<Expression<?>> args, RowMapper<T> mapper) {
+            super(type);
+            this.args = args;
+            this.mapper = mapper;
+        }
+
+        @Override
+        public List<Expression<?>> getArgs() {
+            return args;
+        }
+
+        @Override
+        public T newInstance(Object... values) {
+            return mapper.map(values);
+        }
+
+        @Override
+        public <R, C> R accept(Visitor<R, C> v, C context) {
+            return v.visit(this, context);
+        }
+
+        // hashCode 는 ExpressionBase 에서 final 이고 HashCodeVisitor 로 type 과 args 를 해시하므로 equals 와 맞다.
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this)
+                return true;
+            if (!(obj instanceof FastBean))
+                return false;
+            FastBean<?> other = (FastBean<?>) obj;
+            return getType().equals(other.getType()) && args.equals(other.args) && mapper == other.mapper;
+        }
+    }
+
+    private static class RowMapper<T> {
+        private final Supplier<T> constructor;
+        private final List<BiConsumer<T, Object>> setters;
+
+        private RowMapper(Supplier<T> constructor, List<BiConsumer<T, Object>> setters) {
+            this.constructor = constructor;
+            this.setters = setters;
+        }
+
+        private T map(Object[] values) {
+            T instance = constructor.get();
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] != null)
+                    setters.get(i).accept(instance, values[i]);
+            }
+            return instance;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> RowMapper<T> createMapper(Class<? extends T> type, List<String> properties) {
+        try {
+            MethodHandle constructorHandle = lookup.findConstructor(type, MethodType.methodType(void.class));
+            CallSite constructorSite = LambdaMetafactory.metafactory(lookup, "get",
+                    MethodType.methodType(Supplier.class),
+                    MethodType.methodType(Object.class),
+                    constructorHandle,
+                    MethodType.methodType(type));
+            Supplier<T> constructor = (Supplier<T>) constructorSite.getTarget().invoke();
+
+            List<BiConsumer<T, Object>> setters = new ArrayList<>(properties.size());
+            for (String property : properties)
+                setters.add((BiConsumer<T, Object>) createSetter(type, property));
+            return new RowMapper<>(constructor, setters);
+        } catch (Throwable e) {
+            throw new ExpressionException("Cannot create projection for " + type.getName() + " " + properties, e);
+        }
+    }
+
+    private static BiConsumer<?, Object> createSetter(Class<?> type, String property) throws Throwable {
+        Method setter = findSetter(type, property);
+        if (setter != null) {
+            MethodHandle setterHandle = lookup.unreflect(setter);
+            Class<?> valueType = MethodType.methodType(setter.getParameterTypes()[0]).wrap().returnType();
+            CallSite setterSite = LambdaMetafactory.metafactory(lookup, "accept",
+                    MethodType.methodType(BiConsumer.class),
+                    MethodType.methodType(void.class, Object.class, Object.class),
+                    setterHandle,
+                    MethodType.methodType(void.class, type, valueType));
+            return (BiConsumer<?, Object>) setterSite.getTarget().invoke();
+        }
+
+        Field field = findField(type, property);
+        field.setAccessible(true);
+        MethodHandle fieldHandle = lookup.unreflectSetter(field)
+                .asType(MethodType.methodType(void.class, Object.class, Object.class));
+        return (instance, value) -> {
+            try {
+                fieldHandle.invokeExact(instance, value);
+            } catch (Throwable e) {
+                throw new ExpressionException(e.getMessage(), e);
+            }
+        };
+    }
+
+    private static Method findSetter(Class<?> type, String property) {
+        String name = "set" + Character.toUpperCase(property.charAt(0)) + property.substring(1);
+        for (Method method : type.getMethods()) {
+            if (method.getName().equals(name) && method.getParameterCount() == 1 && !Modifier.isStatic(method.getModifiers()))
+                return method;
+        }
+        return null;
+    }
+
+    private static Field findField(Class<?> type, String property) throws NoSuchFieldException {
+        for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+            for (Field field : current.getDeclaredFields()) {
+                if (field.getName().equals(property))
+                    return field;
+            }
+        }
+        throw new NoSuchFieldException(type.getName() + "." + property);
+    }
+
+    @EqualsAndHashCode
+    @RequiredArgsConstructor
+    private static class MapperKey {
+        private final Class<?> type;
+        private final List<String> properties;
+    }
+}
@@ -0,0 +1,371 @@
+package com.inflearn.querydslstudy.repository.support;
+
+import com.inflearn.querydslstudy.dto.MemberSearchCondition;
+import com.inflearn.querydslstudy.entity.DataChangedEvent;
+import com.inflearn.querydslstudy.entity.DataChangedEvent.Type;
+import com.inflearn.querydslstudy.entity.Member;
+import com.inflearn.querydslstudy.entity.MemberState;
+import com.inflearn.querydslstudy.entity.Team;
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+
+import static com.inflearn.querydslstudy.entity.QMember.member;
+import static com.inflearn.querydslstudy.entity.QTeam.team;
+
+/*
+ * 나이/팀 조건만 있는 검색을 DB 대신 메모리에서 필터링하기 위한 컬럼 인덱스 (member.column-index.enabled)
+ * member 한명당 id(long), age(int), team_id(long) 를 박싱 없이 id 순으로 정렬된 배열에 저장하고 (회원당 20 byte)
+ * 조건을 64개 row 단위의 비트셋으로 여러 코어에서 나눠서 스캔한다.
+ * 조건에 맞는 id 와 정확한 전체 건수를 바로 알수 있으므로 count 쿼리 없이 마지막 페이지의 row 만 id 로 조회하면 된다.
+ * - username 조건이 있거나 읽기/쓰기 트랜잭션 안에서는 사용하지 않는다. (커밋 이후에 반영하므로)
+ * - 애플리케이션 시작시와 bulk 변경 이후에는 DB 에서 다시 만든다. (rebuild 참고)
+ */
+@Component
+public class MemberColumnIndex {
+
+    private static final int NULL_AGE = Integer.MIN_VALUE;
+    private static final long NO_TEAM = 0L;
+    // 이보다 적으면 나눠서 스캔하는 비용이 더 크다.
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+    private static final int CHUNK_WORDS = 1 << 10;
+    private static final int LOAD_BATCH_SIZE = 10_000;
+
+    private final JPAQueryFactory queryFactory;
+    private final TransactionTemplate readOnlyTransaction;
+    private final boolean enabled;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object rebuildLock = new Object();
+
+    private long[] ids = new long[0];
+    private int[] ages = new int[0];
+    private long[] teamIds = new long[0];
+    // 삭제된 row 는 배열에서 빼지 않고 표시만 한다. (rebuild 때 정리)
+    private long[] deleted = new long[0];
+    private int size;
+    private Map<Long, String> teamNames = new HashMap<>();
+    private volatile boolean ready;
+    // rebuild 중에 들어온 변경 (rebuild 중이 아니면 null)
+    private List<DataChangedEvent> pendingChanges;
+
+    public MemberColumnIndex(JPAQueryFactory queryFactory,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${member.column-index.enabled:false}") boolean enabled) {
+        this.queryFactory = queryFactory;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        // bulk 변경의 rebuild 는 AFTER_COMMIT(커밋된 트랜잭션의 afterCompletion)에서 실행되므로 새 트랜잭션으로 읽는다.
+        this.readOnlyTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.enabled = enabled;
+    }
+
+    @Getter
+    public static class Result {
+        private final List<Long> ids;
+        private final long total;
+
+        private Result(List<Long> ids, long total) {
+            this.ids = ids;
+            this.total = total;
+        }
+    }
+
+    /**
+     * id 오름차순으로 offset 부터 limit 개의 id 와 전체 건수
+     * 인덱스로 처리할 수 없는 조건이면 empty
+     */
+    public Optional<Result> search(MemberSearchCondition condition, long offset, int limit) {
+        MemberSearchCondition normalized = condition.normalized();
+        if (!ready || normalized.getUsername() != null || inReadWriteTransaction())
+            return Optional.empty();
+
+        lock.readLock().lock();
+        try {
+            long[] matchedTeams = normalized.getTeamName() == null ? null : teamIdsNamed(normalized.getTeamName());
+            int minAge = normalized.getAgeGoe() == null ? Integer.MIN_VALUE : normalized.getAgeGoe();
+            int maxAge = normalized.getAgeLoe() == null ? Integer.MAX_VALUE : normalized.getAgeLoe();
+            boolean ageFilter = normalized.getAgeGoe() != null || normalized.getAgeLoe() != null;
+
+            long[] words = scan(matchedTeams, ageFilter, minAge, maxAge);
+            long total = 0;
+            for (long word : words)
+                total += Long.bitCount(word);
+
+            List<Long> page = new ArrayList<>(limit);
+            long skip = offset;
+            for (int w = 0; w < words.length && page.size() < limit; w++) {
+                long word = words[w];
+                int bits = Long.bitCount(word);
+                if (skip >= bits) {
+                    skip -= bits;
+                    continue;
+                }
+                while (word != 0 && page.size() < limit) {
+                    int bit = Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                    if (skip > 0) {
+                        skip--;
+                        continue;
+                    }
+                    page.add(ids[(w << 6) + bit]);
+                }
+            }
+            return Optional.of(new Result(page, total));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private long[] scan(long[] matchedTeams, boolean ageFilter, int minAge, int maxAge) {
+        int wordCount = (size + 63) >>> 6;
+        long[] words = new long[wordCount];
+        int chunks = (wordCount + CHUNK_WORDS - 1) / CHUNK_WORDS;
+        IntStream range = IntStream.range(0, chunks);
+        if (size >= PARALLEL_THRESHOLD)
+            range = range.parallel();
+        // 청크마다 서로 다른 word 만 쓰므로 동기화가 필요없다.
+        range.forEach(chunk -> {
+            int fromWord = chunk * CHUNK_WORDS;
+            int toWord = Math.min(wordCount, fromWord + CHUNK_WORDS);
+            for (int w = fromWord; w < toWord; w++) {
+                long word = 0;
+                int base = w << 6;
+                int end = Math.min(size, base + 64);
+                for (int row = base; row < end; row++) {
+                    if (matches(row, matchedTeams, ageFilter, minAge, maxAge))
+                        word |= 1L << (row - base);
+                }
+                words[w] = word & ~deleted[w];
+            }
+        });
+        return words;
+    }
+
+    private boolean matches(int row, long[] matchedTeams, boolean ageFilter, int minAge, int maxAge) {
+        if (ageFilter) {
+            int age = ages[row];
+            if (age == NULL_AGE || age < minAge || age > maxAge)
+                return false;
+        }
+        if (matchedTeams != null) {
+            long teamId = teamIds[row];
+            for (long matched : matchedTeams) {
+                if (matched == teamId)
+                    return true;
+            }
+            return false;
+        }
+        return true;
+    }
+
+    private long[] teamIdsNamed(String name) {
+        return teamNames.entrySet().stream()
+                .filter(entry -> name.equals(entry.getValue()))
+                .mapToLong(Map.Entry::getKey)
+                .toArray();
+    }
+
+    // 시작하기 전에 bulk 변경 이벤트로 이미 만들었으면 (ex. InitPerfData) 다시 읽지 않는다.
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!ready)
+            rebuild();
+    }
+
+    /*
+     * 새 배열은 락 없이 읽고 바꿔 끼운다. 읽는 동안 커밋된 변경은 새 배열에 빠져있을 수 있으므로
+     * rebuild 가 시작된 뒤 들어온 이벤트를 모아뒀다가 바꿔 끼운 직후 다시 적용한다.
+     * 변경 후 상태를 그대로 쓰는 방식이라 이미 읽은 변경을 한번 더 적용해도 결과가 같다.
+     */
+    public void rebuild() {
+        if (!enabled)
+            return;
+        synchronized (rebuildLock) {
+            setPendingChanges(new ArrayList<>());
+            try {
+                Columns loaded = load();
+                lock.writeLock().lock();
+                try {
+                    ids = loaded.ids;
+                    ages = loaded.ages;
+                    teamIds = loaded.teamIds;
+                    deleted = new long[(loaded.ids.length + 63) >>> 6];
+                    size = loaded.size;
+                    teamNames = loaded.teamNames;
+                    for (DataChangedEvent event : pendingChanges)
+                        apply(event);
+                    ready = true;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            } finally {
+                setPendingChanges(null);
+            }
+        }
+    }
+
+    // 전체를 Tuple 목록으로 들고 있지 않도록 id 순으로 나눠서 읽고 바로 배열에 옮긴다.
+    Columns load() {
+        return readOnlyTransaction.execute(status -> {
+            Columns columns = new Columns();
+            for (Tuple tuple : queryFactory.select(team.id, team.name).from(team).fetch())
+                columns.teamNames.put(tuple.get(team.id), tuple.get(team.name));
+
+            long lastId = Long.MIN_VALUE;
+            List<Tuple> rows;
+            do {
+                rows = queryFactory
+                        .select(member.id, member.age, member.team.id)
+                        .from(member)
+                        .where(member.id.gt(lastId))
+                        .orderBy(member.id.asc())
+                        .limit(LOAD_BATCH_SIZE)
+                        .fetch();
+                for (Tuple row : rows)
+                    columns.add(row.get(member.id), ageOf(row.get(member.age)), teamOf(row.get(member.team.id)));
+                if (!rows.isEmpty())
+                    lastId = rows.get(rows.size() - 1).get(member.id);
+            } while (rows.size() == LOAD_BATCH_SIZE);
+            return columns;
+        });
+    }
+
+    private void setPendingChanges(List<DataChangedEvent> changes) {
+        lock.writeLock().lock();
+        try {
+            pendingChanges = changes;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onChange(DataChangedEvent event) {
+        if (!enabled)
+            return;
+        if (event.getType() == Type.BULK) {
+            rebuild();
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            apply(event);
+            if (pendingChanges != null)
+                pendingChanges.add(event);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void apply(DataChangedEvent event) {
+        if (event.getEntityType() == Team.class) {
+            Team changed = (Team) event.getEntity();
+            if (event.getType() == Type.DELETE)
+                teamNames.remove(changed.getId());
+            else
+                teamNames.put(changed.getId(), changed.getName());
+        } else if (event.getEntityType() == Member.class) {
+            applyMemberChange(event.getType(), ((Member) event.getEntity()).getId(), event.getAfter());
+        }
+    }
+
+    private void applyMemberChange(Type type, long id, MemberState after) {
+        int row = Arrays.binarySearch(ids, 0, size, id);
+        if (type == Type.DELETE) {
+            if (row >= 0)
+                deleted[row >>> 6] |= 1L << row;
+            return;
+        }
+        if (row < 0)
+            row = insertRow(-row - 1, id);
+        ages[row] = ageOf(after.getAge());
+        teamIds[row] = teamOf(after.getTeamId());
+    }
+
+    // IDENTITY 로 생성되는 id 는 보통 가장 크므로 대부분 배열 끝에 추가된다.
+    private int insertRow(int row, long id) {
+        if (size == ids.length) {
+            int capacity = Math.max(16, size + (size >> 1));
+            ids = Arrays.copyOf(ids, capacity);
+            ages = Arrays.copyOf(ages, capacity);
+            teamIds = Arrays.copyOf(teamIds, capacity);
+            deleted = Arrays.copyOf(deleted, (capacity + 63) >>> 6);
+        }
+        if (row < size) {
+            System.arraycopy(ids, row, ids, row + 1, size - row);
+            System.arraycopy(ages, row, ages, row + 1, size - row);
+            System.arraycopy(teamIds, row, teamIds, row + 1, size - row);
+            shiftDeleted(row);
+        }
+        ids[row] = id;
+        size++;
+        return row;
+    }
+
+    // row 위치에 새 row 가 끼어들었으므로 그 뒤의 삭제 표시를 한칸씩 민다.
+    private void shiftDeleted(int row) {
+        for (int i = size; i > row; i--) {
+            boolean wasDeleted = (deleted[(i - 1) >>> 6] & (1L << (i - 1))) != 0;
+            if (wasDeleted)
+                deleted[i >>> 6] |= 1L << i;
+            else
+                deleted[i >>> 6] &= ~(1L << i);
+        }
+        deleted[row >>> 6] &= ~(1L << row);
+    }
+
+    static class Columns {
+        private long[] ids = new long[1024];
+        private int[] ages = new int[1024];
+        private long[] teamIds = new long[1024];
+        private int size;
+        private final Map<Long, String> teamNames = new HashMap<>();
+
+        private void add(long id, int age, long teamId) {
+            if (size == ids.length) {
+                int capacity = size + (size >> 1);
+                ids = Arrays.copyOf(ids, capacity);
+                ages = Arrays.copyOf(ages, capacity);
+                teamIds = Arrays.copyOf(teamIds, capacity);
+            }
+            ids[size] = id;
+            ages[size] = age;
+            teamIds[size] = teamId;
+            size++;
+        }
+    }
+
+    private static int ageOf(Integer age) {
+        return age == null ? NULL_AGE : age;
+    }
+
+    private static long teamOf(Long teamId) {
+        return teamId == null ? NO_TEAM : teamId;
+    }
+
+    private static boolean inReadWriteTransaction() {
+        return TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+}
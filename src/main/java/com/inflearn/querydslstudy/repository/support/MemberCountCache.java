@@ -0,0 +1,99 @@
+package com.inflearn.querydslstudy.repository.support;
+
+import com.inflearn.querydslstudy.dto.MemberSearchCondition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * 검색 조건별 count 쿼리 결과 캐시
+ * size(LRU) 와 TTL 로 크기를 제한하고, DataVersion 이 바뀌면 저장된 값은 더이상 사용하지 않는다.
+ */
+@Component
+public class MemberCountCache {
+
+    private final DataVersion dataVersion;
+    private final long ttlNanos;
+    private final Map<MemberSearchCondition, Entry> entries;
+
+    public MemberCountCache(DataVersion dataVersion,
+                            @Value("${member.count-cache.max-size:1000}") int maxSize,
+                            @Value("${member.count-cache.ttl:60s}") Duration ttl) {
+        this.dataVersion = dataVersion;
+        this.ttlNanos = ttl.toNanos();
+        this.entries = new LinkedHashMap<MemberSearchCondition, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<MemberSearchCondition, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * 캐시된 count 가 있으면 반환하고 없으면 null
+     */
+    public Long getIfPresent(MemberSearchCondition condition) {
+        if (!isCacheable())
+            return null;
+
+        MemberSearchCondition key = condition.normalized();
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.version == dataVersion.current() && System.nanoTime() < entry.expiresAt)
+                return entry.count;
+        }
+        return null;
+    }
+
+    public long getOrCompute(MemberSearchCondition condition, LongSupplier countQuery) {
+        // 쓰기 트랜잭션 안에서는 커밋되지 않은 데이터가 count 에 섞일 수 있으므로 캐시를 사용하지 않는다.
+        if (!isCacheable())
+            return countQuery.getAsLong();
+
+        MemberSearchCondition key = condition.normalized();
+        long now = System.nanoTime();
+        long version = dataVersion.current();
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.version == version && now < entry.expiresAt)
+                return entry.count;
+        }
+
+        // count 를 실행하기 전의 버전으로 저장해야 실행 도중 발생한 변경도 무효화된다.
+        long count = countQuery.getAsLong();
+        synchronized (entries) {
+            entries.put(key, new Entry(count, version, now + ttlNanos));
+        }
+        return count;
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    private boolean isCacheable() {
+        return !TransactionSynchronizationManager.isActualTransactionActive()
+                || TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+    private static class Entry {
+        private final long count;
+        private final long version;
+        private final long expiresAt;
+
+        private Entry(long count, long version, long expiresAt) {
+            this.count = count;
+            this.version = version;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.inflearn.querydslstudy.repository.support;
+
+import com.inflearn.querydslstudy.dto.MemberCursorPage;
+import com.inflearn.querydslstudy.dto.MemberSearchCondition;
+import com.inflearn.querydslstudy.dto.MemberSearchCondition.UsernameMatch;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.repository.support.PageableExecutionUtils;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/*
+ * 회원 검색 repository 메트릭
+ * - member.repository.query : 메소드, 조건 모양(shape)별 실행 시간 (p99 알림용 histogram 포함)
+ * - member.repository.rows : 메소드별 조회된 row 수
+ * - member.repository.count : PageableExecutionUtils.getPage 가 count 쿼리를 실행(executed)했는지 생략(skipped)했는지
+ * - member.repository.coalesced : 실행중인 같은 검색의 결과를 같이 받아서 DB 를 조회하지 않은 호출 수 (SingleFlight)
+ * shape 는 조건 값이 아니라 어떤 조건이 있는지만 태그로 남기므로 태그 종류는 최대 32개 (username 은 검색 방식별로 나뉜다)
+ */
+@Component
+public class MemberQueryMetrics {
+
+    private final MeterRegistry registry;
+
+    public MemberQueryMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public <T> T record(String method, MemberSearchCondition condition, Supplier<T> query) {
+        Timer timer = Timer.builder("member.repository.query")
+                .tag("method", method)
+                .tag("shape", shapeOf(condition))
+                .publishPercentileHistogram()
+                .register(registry);
+        T result = timer.record(query);
+        recordRows(method, result);
+        return result;
+    }
+
+    public <T> Page<T> getPage(String method, List<T> content, Pageable pageable, LongSupplier countQuery) {
+        boolean[] executed = new boolean[1];
+        Page<T> page = PageableExecutionUtils.getPage(content, pageable, () -> {
+            executed[0] = true;
+            return countQuery.getAsLong();
+        });
+        countCounter(method, executed[0] ? "executed" : "skipped").increment();
+        return page;
+    }
+
+    Counter countCounter(String method, String result) {
+        return Counter.builder("member.repository.count")
+                .tag("method", method)
+                .tag("result", result)
+                .register(registry);
+    }
+
+    public Counter coalescedCounter(String method) {
+        return Counter.builder("member.repository.coalesced")
+                .tag("method", method)
+                .register(registry);
+    }
+
+    private void recordRows(String method, Object result) {
+        int rows;
+        if (result instanceof Slice) // Page 포함
+            rows = ((Slice<?>) result).getNumberOfElements();
+        else if (result instanceof MemberCursorPage)
+            rows = ((MemberCursorPage) result).getContent().size();
+        else if (result instanceof Collection)
+            rows = ((Collection<?>) result).size();
+        else
+            return;
+
+        DistributionSummary.builder("member.repository.rows")
+                .tag("method", method)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(rows);
+    }
+
+    static String shapeOf(MemberSearchCondition condition) {
+        MemberSearchCondition normalized = condition.normalized();
+        List<String> fields = new ArrayList<>(4);
+        if (normalized.getUsername() != null)
+            fields.add(normalized.getUsernameMatch() == UsernameMatch.EXACT
+                    ? "username" : "username:" + normalized.getUsernameMatch().name().toLowerCase());
+        if (normalized.getTeamName() != null)
+            fields.add("teamName");
+        if (normalized.getAgeGoe() != null)
+            fields.add("ageGoe");
+        if (normalized.getAgeLoe() != null)
+            fields.add("ageLoe");
+        return fields.isEmpty() ? "none" : String.join("+", fields);
+    }
+}
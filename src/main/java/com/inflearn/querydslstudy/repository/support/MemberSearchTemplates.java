@@ -0,0 +1,264 @@
+package com.inflearn.querydslstudy.repository.support;
+
+import com.inflearn.querydslstudy.dto.MemberSearchCondition;
+import com.inflearn.querydslstudy.dto.MemberTeamDto;
+import com.inflearn.querydslstudy.dto.QMemberTeamDto;
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.types.ParamExpression;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.core.types.dsl.Param;
+import com.querydsl.jpa.JPQLSerializer;
+import com.querydsl.jpa.JPQLTemplates;
+import com.querydsl.jpa.impl.JPAProvider;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAUtil;
+import lombok.EqualsAndHashCode;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.inflearn.querydslstudy.entity.QMember.member;
+import static com.inflearn.querydslstudy.entity.QTeam.team;
+
+/*
+ * 검색 조건의 모양(shape: username(검색 방식), teamName, ageGoe, ageLoe 중 어떤 값이 있는지)별로 미리 컴파일한 쿼리 템플릿
+ * 조건 모양은 몇십가지 뿐이므로 shape 마다 querydsl 로 한번만 JPQL 을 만들어 두고(값 대신 Param 으로),
+ * 요청마다 projection 생성, BooleanExpression 조립, JPQL 직렬화를 반복하지 않고 파라미터 바인딩만 한다.
+ * 같은 JPQL 문자열을 재사용하므로 hibernate 의 query plan cache 도 항상 hit 한다.
+ */
+@Component
+public class MemberSearchTemplates {
+
+    private static final int USERNAME = 1;
+    private static final int TEAM_NAME = 1 << 1;
+    private static final int AGE_GOE = 1 << 2;
+    private static final int AGE_LOE = 1 << 3;
+    private static final int USERNAME_PREFIX = 1 << 4;
+    private static final int USERNAME_CONTAINS = 1 << 5;
+    private static final int MEMBER_IDS = 1 << 6;
+    private static final char LIKE_ESCAPE = '!';
+
+    private static final Param<String> usernameParam = new Param<>(String.class, "username");
+    private static final Param<String> teamNameParam = new Param<>(String.class, "teamName");
+    private static final Param<Integer> ageGoeParam = new Param<>(Integer.class, "ageGoe");
+    private static final Param<Integer> ageLoeParam = new Param<>(Integer.class, "ageLoe");
+    @SuppressWarnings("unchecked")
+    private static final Param<Collection<Long>> memberIdsParam =
+            new Param<>((Class<Collection<Long>>) (Class<?>) Collection.class, "memberIds");
+
+    private final EntityManager em;
+    private final UsernameIndex usernameIndex;
+    private final Map<TemplateKey, CompiledQuery> templates = new ConcurrentHashMap<>();
+
+    public MemberSearchTemplates(EntityManager em, UsernameIndex usernameIndex) {
+        this.em = em;
+        this.usernameIndex = usernameIndex;
+    }
+
+    public enum Kind {
+        CONTENT, CONTENT_ORDERED, COUNT
+    }
+
+    public List<MemberTeamDto> fetch(MemberSearchCondition condition, Kind kind) {
+        return fetch(condition, kind, 0, -1);
+    }
+
+    /**
+     * @param offset JPA 는 int 범위까지만 받는다. 그보다 크면 그만큼 회원이 있을 수 없으므로 조회하지 않고 빈 목록
+     * @param limit 0 보다 작으면 제한하지 않는다.
+     */
+    public List<MemberTeamDto> fetch(MemberSearchCondition condition, Kind kind, long offset, int limit) {
+        Query query = offset > Integer.MAX_VALUE ? null : createQuery(condition, kind);
+        if (query == null)
+            return new ArrayList<>();
+        if (offset > 0)
+            query.setFirstResult(Math.toIntExact(offset));
+        if (limit >= 0)
+            query.setMaxResults(limit);
+        return toDtos(query);
+    }
+
+    /**
+     * id 로 content 를 조회한다. (MemberColumnIndex 가 찾은 페이지)
+     */
+    public List<MemberTeamDto> fetchByIds(List<Long> ids) {
+        if (ids.isEmpty())
+            return new ArrayList<>();
+        CompiledQuery compiled = templates.computeIfAbsent(new TemplateKey(MEMBER_IDS, Kind.CONTENT_ORDERED), this::compile);
+        Query query = em.createQuery(compiled.jpql);
+        JPAUtil.setConstants(query, compiled.constantToLabel, Collections.singletonMap(memberIdsParam, ids));
+        return toDtos(query);
+    }
+
+    private List<MemberTeamDto> toDtos(Query query) {
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = query.getResultList();
+        List<MemberTeamDto> result = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            result.add(new MemberTeamDto((Long) row[0], (String) row[1], (Integer) row[2], (Long) row[3], (String) row[4]));
+        }
+        return result;
+    }
+
+    public long count(MemberSearchCondition condition) {
+        Query query = createQuery(condition, Kind.COUNT);
+        return query == null ? 0 : (Long) query.getSingleResult();
+    }
+
+    int compiledTemplateCount() {
+        return templates.size();
+    }
+
+    /**
+     * @return 결과가 없는 것이 확실하면 null
+     */
+    private Query createQuery(MemberSearchCondition condition, Kind kind) {
+        MemberSearchCondition normalized = condition.normalized();
+        int shape = shapeOf(normalized);
+
+        Map<ParamExpression<?>, Object> params = new HashMap<>(8);
+        if ((shape & USERNAME) != 0)
+            params.put(usernameParam, normalized.getUsername());
+        if ((shape & USERNAME_PREFIX) != 0)
+            params.put(usernameParam, escapeLike(normalized.getUsername()) + "%");
+        if ((shape & USERNAME_CONTAINS) != 0) {
+            params.put(usernameParam, "%" + escapeLike(normalized.getUsername()) + "%");
+            Optional<List<Long>> ids = usernameIndex.findIdsContaining(normalized.getUsername());
+            if (ids.isPresent()) {
+                if (ids.get().isEmpty())
+                    return null;
+                shape |= MEMBER_IDS;
+                params.put(memberIdsParam, ids.get());
+            }
+        }
+        if ((shape & TEAM_NAME) != 0)
+            params.put(teamNameParam, normalized.getTeamName());
+        if ((shape & AGE_GOE) != 0)
+            params.put(ageGoeParam, normalized.getAgeGoe());
+        if ((shape & AGE_LOE) != 0)
+            params.put(ageLoeParam, normalized.getAgeLoe());
+
+        CompiledQuery compiled = templates.computeIfAbsent(new TemplateKey(shape, kind), this::compile);
+        Query query = em.createQuery(compiled.jpql);
+        JPAUtil.setConstants(query, compiled.constantToLabel, params);
+        return query;
+    }
+
+    private int shapeOf(MemberSearchCondition condition) {
+        int shape = 0;
+        if (condition.getUsername() != null) {
+            switch (condition.getUsernameMatch()) {
+                case PREFIX:
+                    shape |= USERNAME_PREFIX;
+                    break;
+                case CONTAINS:
+                    shape |= USERNAME_CONTAINS;
+                    break;
+                default:
+                    shape |= USERNAME;
+            }
+        }
+        if (condition.getTeamName() != null)
+            shape |= TEAM_NAME;
+        if (condition.getAgeGoe() != null)
+            shape |= AGE_GOE;
+        if (condition.getAgeLoe() != null)
+            shape |= AGE_LOE;
+        return shape;
+    }
+
+    private CompiledQuery compile(TemplateKey key) {
+        JPQLTemplates jpqlTemplates = JPAProvider.getTemplates(em);
+        JPAQuery<MemberTeamDto> query = new JPAQuery<>(em, jpqlTemplates)
+                .select(new QMemberTeamDto(
+                        member.id.as("memberId"),
+                        member.username,
+                        member.age,
+                        team.id.as("teamId"),
+                        team.name.as("teamName")
+                ))
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(
+                        memberIdsCondition(key.shape),
+                        usernameCondition(key.shape),
+                        teamNameCondition(key.shape),
+                        ageGoeCondition(key.shape),
+                        ageLoeCondition(key.shape)
+                );
+        if (key.kind == Kind.CONTENT_ORDERED)
+            query.orderBy(member.id.asc(), member.username.desc());
+
+        // count 는 조건에서 쓰지 않는 team join 을 빼고 count(member.id) 로 만든다.
+        QueryMetadata metadata = key.kind == Kind.COUNT
+                ? QuerydslPaging.countMetadata(query.getMetadata(), member.id)
+                : query.getMetadata();
+        JPQLSerializer serializer = new JPQLSerializer(jpqlTemplates, em);
+        serializer.serialize(metadata, false, null);
+        return new CompiledQuery(serializer.toString(), serializer.getConstantToLabel());
+    }
+
+    // UsernameIndex 가 찾은 후보 id. 인덱스가 반영되기 전에 username 이 바뀌었을수 있으므로 like 조건도 같이 건다.
+    private BooleanExpression memberIdsCondition(int shape) {
+        return (shape & MEMBER_IDS) != 0 ? Expressions.booleanTemplate("{0} in ({1})", member.id, memberIdsParam) : null;
+    }
+
+    private BooleanExpression usernameCondition(int shape) {
+        if ((shape & USERNAME) != 0)
+            return member.username.eq(usernameParam);
+        // 'x%' 는 username 인덱스를 사용할수 있도록 concat 없이 패턴 자체를 파라미터로 바인딩한다.
+        if ((shape & (USERNAME_PREFIX | USERNAME_CONTAINS)) != 0)
+            return member.username.like(usernameParam, LIKE_ESCAPE);
+        return null;
+    }
+
+    private BooleanExpression teamNameCondition(int shape) {
+        return (shape & TEAM_NAME) != 0 ? team.name.eq(teamNameParam) : null;
+    }
+
+    private BooleanExpression ageGoeCondition(int shape) {
+        return (shape & AGE_GOE) != 0 ? member.age.goe(ageGoeParam) : null;
+    }
+
+    private BooleanExpression ageLoeCondition(int shape) {
+        return (shape & AGE_LOE) != 0 ? member.age.loe(ageLoeParam) : null;
+    }
+
+    static String escapeLike(String value) {
+        StringBuilder escaped = new StringBuilder(value.length() + 4);
+        for (char c : value.toCharArray()) {
+            if (c == LIKE_ESCAPE || c == '%' || c == '_')
+                escaped.append(LIKE_ESCAPE);
+            escaped.append(c);
+        }
+        return escaped.toString();
+    }
+
+    private static class CompiledQuery {
+        private final String jpql;
+        private final Map<Object, String> constantToLabel;
+
+        private CompiledQuery(String jpql, Map<Object, String> constantToLabel) {
+            this.jpql = jpql;
+            this.constantToLabel = new HashMap<>(constantToLabel);
+        }
+    }
+
+    @EqualsAndHashCode
+    @RequiredArgsConstructor
+    private static class TemplateKey {
+        private final int shape;
+        private final Kind kind;
+    }
+}
@@ -0,0 +1,156 @@
+package com.inflearn.querydslstudy.repository.support;
+
+import com.querydsl.core.DefaultQueryMetadata;
+import com.querydsl.core.JoinExpression;
+import com.querydsl.core.JoinFlag;
+import com.querydsl.core.JoinType;
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.types.EntityPath;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.FactoryExpression;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.ParamExpression;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.SubQueryExpression;
+import com.querydsl.core.types.TemplateExpression;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.jpa.JPAQueryMixin;
+import com.querydsl.jpa.impl.JPAProvider;
+import com.querydsl.jpa.impl.JPAQuery;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.repository.support.PageableExecutionUtils;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/*
+ * 아무 JPAQuery 에나 사용할 수 있는 페이징 도우미
+ * fetchResults() 는 content 쿼리를 그대로 count 쿼리로 바꾸므로 조건에서 쓰지 않는 join 과 order by 가 그대로 남는다.
+ * countQuery 는 content 쿼리에서
+ * - where/having/다른 join 에서 참조하지 않는 to-one 연관관계 left join 을 제거하고 (row 수가 달라질 수 있는 join 은 유지)
+ * - fetch join 은 일반 join 으로 바꾸고
+ * - order by, offset/limit 을 제거하고
+ * - select 는 count(엔티티) 대신 count(id) 로 바꾼다.
+ * 조건이 없거나 member 컬럼만 사용하는 count 는 member 테이블(인덱스)만 읽게 된다.
+ */
+public final class QuerydslPaging {
+
+    private QuerydslPaging() {
+    }
+
+    /**
+     * content 조회 후 필요할 때만(PageableExecutionUtils) countQuery 를 실행한다.
+     */
+    public static <T> Page<T> getPage(EntityManager em, JPAQuery<T> query, Pageable pageable, Expression<?> countTarget) {
+        JPAQuery<Long> countQuery = countQuery(em, query, countTarget);
+        List<T> content = query.clone(em)
+                .offset(pageable.getOffset())
+                .limit(pageable.getPageSize())
+                .fetch();
+        return PageableExecutionUtils.getPage(content, pageable, countQuery::fetchOne);
+    }
+
+    public static JPAQuery<Long> countQuery(EntityManager em, JPAQuery<?> query, Expression<?> countTarget) {
+        return new JPAQuery<>(em, JPAProvider.getTemplates(em), countMetadata(query.getMetadata(), countTarget));
+    }
+
+    /**
+     * @param countTarget 보통 root 엔티티의 id (ex. member.id)
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static QueryMetadata countMetadata(QueryMetadata metadata, Expression<?> countTarget) {
+        if (!metadata.getGroupBy().isEmpty())
+            throw new IllegalArgumentException("group by query is not supported");
+
+        // 뒤에서부터 보면서 필요한 join 만 남긴다. (뒤의 join 이 앞의 join alias 를 참조할 수 있으므로)
+        Set<Expression<?>> referenced = new HashSet<>();
+        collectRoots(metadata.getWhere(), referenced);
+        collectRoots(metadata.getHaving(), referenced);
+        collectRoots(countTarget, referenced);
+
+        List<JoinExpression> joins = metadata.getJoins();
+        List<JoinExpression> kept = new ArrayList<>(joins.size());
+        for (int i = joins.size() - 1; i >= 0; i--) {
+            JoinExpression join = joins.get(i);
+            if (i > 0 && removable(join, referenced))
+                continue;
+            collectRoots(join.getTarget(), referenced);
+            collectRoots(join.getCondition(), referenced);
+            kept.add(join);
+        }
+        Collections.reverse(kept);
+
+        QueryMetadata count = new DefaultQueryMetadata();
+        for (JoinExpression join : kept) {
+            count.addJoin(join.getType(), join.getTarget());
+            if (join.getCondition() != null)
+                count.addJoinCondition(join.getCondition());
+            for (JoinFlag flag : join.getFlags()) {
+                if (!flag.equals(JPAQueryMixin.FETCH) && !flag.equals(JPAQueryMixin.FETCH_ALL_PROPERTIES))
+                    count.addJoinFlag(flag);
+            }
+        }
+        if (metadata.getWhere() != null)
+            count.addWhere(metadata.getWhere());
+        if (metadata.getHaving() != null)
+            count.addHaving(metadata.getHaving());
+        for (Map.Entry<ParamExpression<?>, Object> param : metadata.getParams().entrySet())
+            count.setParam((ParamExpression) param.getKey(), param.getValue());
+        count.setProjection(Expressions.numberOperation(Long.class,
+                metadata.isDistinct() ? Ops.AggOps.COUNT_DISTINCT_AGG : Ops.AggOps.COUNT_AGG, countTarget));
+        return count;
+    }
+
+    /*
+     * alias 를 붙인 to-one 연관관계 left join (ex. leftJoin(member.team, team)) 이고 어디서도 참조하지 않을때만 제거한다.
+     * 컬렉션/맵 join, on 절이 있는 join, 연관관계가 아닌 엔티티 join (leftJoin(team).on(...)) 은 row 수를 바꿀 수 있으므로 유지한다.
+     */
+    private static boolean removable(JoinExpression join, Set<Expression<?>> referenced) {
+        if (join.getType() != JoinType.LEFTJOIN || join.getCondition() != null)
+            return false;
+        Expression<?> target = join.getTarget();
+        if (!(target instanceof Operation) || ((Operation<?>) target).getOperator() != Ops.ALIAS)
+            return false;
+        Operation<?> operation = (Operation<?>) target;
+        Expression<?> association = operation.getArg(0);
+        if (!(association instanceof EntityPath) || ((Path<?>) association).getMetadata().getParent() == null)
+            return false;
+        return !referenced.contains(operation.getArg(1));
+    }
+
+    private static void collectRoots(Expression<?> expr, Set<Expression<?>> roots) {
+        if (expr == null)
+            return;
+        if (expr instanceof Path) {
+            roots.add(((Path<?>) expr).getRoot());
+        } else if (expr instanceof Operation) {
+            for (Expression<?> arg : ((Operation<?>) expr).getArgs())
+                collectRoots(arg, roots);
+        } else if (expr instanceof TemplateExpression) {
+            for (Object arg : ((TemplateExpression<?>) expr).getArgs()) {
+                if (arg instanceof Expression)
+                    collectRoots((Expression<?>) arg, roots);
+            }
+        } else if (expr instanceof FactoryExpression) {
+            for (Expression<?> arg : ((FactoryExpression<?>) expr).getArgs())
+                collectRoots(arg, roots);
+        } else if (expr instanceof SubQueryExpression) {
+            // 서브쿼리가 바깥 쿼리의 alias 를 참조할 수 있다.
+            QueryMetadata sub = ((SubQueryExpression<?>) expr).getMetadata();
+            collectRoots(sub.getWhere(), roots);
+            collectRoots(sub.getHaving(), roots);
+            collectRoots(sub.getProjection(), roots);
+            for (JoinExpression join : sub.getJoins()) {
+                collectRoots(join.getTarget(), roots);
+                collectRoots(join.getCondition(), roots);
+            }
+        }
+    }
+}
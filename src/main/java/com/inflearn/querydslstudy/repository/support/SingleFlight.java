@@ -0,0 +1,79 @@
+package com.inflearn.querydslstudy.repository.support;
+
+import com.inflearn.querydslstudy.dto.MemberSearchCondition;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/*
+ * 같은 검색이 동시에 여러개 들어오면 먼저 들어온 호출(leader)만 DB 에서 실행하고 나머지는 그 결과를 같이 받는다.
+ * - key 에 DataVersion 을 포함하므로 leader 가 시작한 뒤 데이터가 바뀌었다면 같이 받지 않고 새로 실행한다.
+ * - 실행이 끝나면 바로 map 에서 제거하므로 결과를 캐시하지는 않는다. (이미 끝난 결과를 받는 일은 없다)
+ * - 읽기/쓰기 트랜잭션 안에서는 아직 커밋 안된 데이터가 보일수 있으므로 공유하지 않는다.
+ */
+@Component
+public class SingleFlight {
+
+    private final ConcurrentMap<List<Object>, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final DataVersion dataVersion;
+    private final MemberQueryMetrics metrics;
+
+    public SingleFlight(DataVersion dataVersion, MemberQueryMetrics metrics) {
+        this.dataVersion = dataVersion;
+        this.metrics = metrics;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String method, MemberSearchCondition condition, Pageable pageable, Supplier<T> query) {
+        if (!shareable())
+            return query.get();
+
+        List<Object> key = Arrays.asList(method, condition.normalized(), pageable, dataVersion.current());
+        CompletableFuture<Object> leader = new CompletableFuture<>();
+        CompletableFuture<Object> running = inFlight.putIfAbsent(key, leader);
+        if (running != null) {
+            metrics.coalescedCounter(method).increment();
+            return (T) join(running);
+        }
+
+        try {
+            T result = query.get();
+            inFlight.remove(key, leader);
+            leader.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            inFlight.remove(key, leader);
+            leader.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    int inFlightCount() {
+        return inFlight.size();
+    }
+
+    private Object join(CompletableFuture<Object> running) {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+            throw e;
+        }
+    }
+
+    private boolean shareable() {
+        return !TransactionSynchronizationManager.isActualTransactionActive()
+                || TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+}
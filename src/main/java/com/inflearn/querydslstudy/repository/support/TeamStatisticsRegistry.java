@@ -0,0 +1,296 @@
+package com.inflearn.querydslstudy.repository.support;
+
+import com.inflearn.querydslstudy.dto.TeamStatisticsDto;
+import com.inflearn.querydslstudy.entity.DataChangedEvent;
+import com.inflearn.querydslstudy.entity.DataChangedEvent.Type;
+import com.inflearn.querydslstudy.entity.Member;
+import com.inflearn.querydslstudy.entity.MemberState;
+import com.inflearn.querydslstudy.entity.Team;
+import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import static com.inflearn.querydslstudy.entity.QMember.member;
+import static com.inflearn.querydslstudy.entity.QTeam.team;
+
+/*
+ * 팀별 회원 수, 나이 합계/평균/최소/최대를 메모리에 유지한다.
+ * groupBy 로 전체 member 를 읽는 대신 Member/Team 변경 이벤트를 커밋 이후에 반영해서 O(팀 수) 로 조회한다.
+ * 나이 분포(나이별 인원수)를 같이 들고 있어서 최소/최대 나이인 회원이 삭제되어도 다시 조회하지 않고 갱신할 수 있다.
+ * 애플리케이션 시작시와 bulk 변경 이후에는 DB 에서 다시 만든다. (rebuild 참고)
+ */
+@Slf4j
+@Component
+public class TeamStatisticsRegistry {
+
+    // 팀이 없는 회원
+    private static final long NO_TEAM = 0L;
+    private static final int MAX_RELOAD_ROUNDS = 10;
+    private static final long IN_FLIGHT_WAIT_MILLIS = 100;
+
+    private final JPAQueryFactory queryFactory;
+    private final TransactionTemplate readOnlyTransaction;
+    private Map<Long, TeamStatistics> statistics = new HashMap<>();
+    private final Object rebuildLock = new Object();
+    // 커밋이 진행중인 변경이 있는 팀과 변경 수
+    private final Map<Long, Integer> inFlight = new HashMap<>();
+    // rebuild 중에 반영된 변경의 팀 (rebuild 중이 아니면 null)
+    private Set<Long> changedDuringRebuild;
+    private volatile boolean ready;
+
+    public TeamStatisticsRegistry(JPAQueryFactory queryFactory, PlatformTransactionManager transactionManager) {
+        this.queryFactory = queryFactory;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        // bulk 변경의 rebuild 는 커밋된 트랜잭션의 afterCompletion 에서 실행되므로 거기에 참여하지 않고 새로 시작한다.
+        this.readOnlyTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public synchronized List<TeamStatisticsDto> findAll() {
+        List<TeamStatisticsDto> result = new ArrayList<>(statistics.size());
+        statistics.forEach((teamId, stats) -> result.add(stats.toDto(teamId == NO_TEAM ? null : teamId)));
+        result.sort((a, b) -> a.getTeamId() == null ? 1 : b.getTeamId() == null ? -1 : a.getTeamId().compareTo(b.getTeamId()));
+        return result;
+    }
+
+    // 시작하기 전에 bulk 변경 이벤트로 이미 만들었으면 (ex. InitPerfData) 다시 읽지 않는다.
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!ready)
+            rebuild();
+    }
+
+    /*
+     * 읽는 동안 커밋된 변경은 새로 읽은 값에 포함됐는지 알수 없다. (증감으로 반영하므로 두번 반영하거나 빠뜨리게 된다)
+     * 그래서 rebuild 중에 변경이 반영된 팀과 커밋이 진행중인 팀은 다시 읽고, 그런 팀이 없을때 바꿔 끼운다.
+     * 바꿔 끼운 이후에 반영되는 변경은 모두 마지막으로 읽은 뒤에 커밋된 것이다.
+     * 쓰기가 계속 몰려서 MAX_RELOAD_ROUNDS 안에 끝나지 않으면 그대로 바꿔 끼우고 경고를 남긴다. (다음 rebuild 까지 해당 팀은 오차가 있을 수 있음)
+     */
+    public void rebuild() {
+        synchronized (rebuildLock) {
+            synchronized (this) {
+                changedDuringRebuild = new HashSet<>();
+            }
+            try {
+                Map<Long, TeamStatistics> rebuilt = load(null);
+                for (int round = 0; ; round++) {
+                    Set<Long> reload;
+                    synchronized (this) {
+                        // 진행중인 커밋만 있으면 끝날때까지 잠깐 기다린다. (end 에서 notifyAll)
+                        if (changedDuringRebuild.isEmpty() && !inFlight.isEmpty())
+                            waitForInFlight();
+                        reload = new HashSet<>(changedDuringRebuild);
+                        reload.addAll(inFlight.keySet());
+                        if (reload.isEmpty() || round == MAX_RELOAD_ROUNDS) {
+                            if (!reload.isEmpty())
+                                log.warn("team statistics may be inaccurate for teams {} until the next rebuild", reload);
+                            statistics = rebuilt;
+                            ready = true;
+                            return;
+                        }
+                        changedDuringRebuild.clear();
+                    }
+                    rebuilt.keySet().removeAll(reload);
+                    rebuilt.putAll(load(reload));
+                }
+            } finally {
+                synchronized (this) {
+                    changedDuringRebuild = null;
+                }
+            }
+        }
+    }
+
+    private void waitForInFlight() {
+        try {
+            wait(IN_FLIGHT_WAIT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @param teamIds null 이면 전체 팀 (NO_TEAM 은 팀이 없는 회원)
+     */
+    Map<Long, TeamStatistics> load(Set<Long> teamIds) {
+        Map<Long, TeamStatistics> loaded = new HashMap<>();
+        List<Long> ids = teamIds == null ? null
+                : teamIds.stream().filter(id -> id != NO_TEAM).collect(Collectors.toList());
+        BooleanBuilder memberCondition = new BooleanBuilder();
+        if (teamIds != null) {
+            if (!ids.isEmpty())
+                memberCondition.or(member.team.id.in(ids));
+            if (teamIds.contains(NO_TEAM))
+                memberCondition.or(member.team.isNull());
+        }
+
+        readOnlyTransaction.execute(status -> {
+            if (ids == null || !ids.isEmpty()) {
+                List<Tuple> teams = queryFactory
+                        .select(team.id, team.name)
+                        .from(team)
+                        .where(ids == null ? null : team.id.in(ids))
+                        .fetch();
+                for (Tuple tuple : teams) {
+                    loaded.put(tuple.get(team.id), new TeamStatistics(tuple.get(team.name)));
+                }
+            }
+
+            // 팀, 나이별 인원수
+            List<Tuple> ages = queryFactory
+                    .select(member.team.id, member.age, member.count())
+                    .from(member)
+                    .where(memberCondition)
+                    .groupBy(member.team.id, member.age)
+                    .fetch();
+            for (Tuple tuple : ages) {
+                loaded.computeIfAbsent(teamKey(tuple.get(member.team.id)), id -> new TeamStatistics(null))
+                        .add(tuple.get(member.age), tuple.get(member.count()));
+            }
+            return null;
+        });
+        return loaded;
+    }
+
+    /*
+     * 발행 시점(커밋 전)에 영향받는 팀을 진행중으로 표시하고, 트랜잭션이 끝나면 (커밋이면 반영하고) 표시를 지운다.
+     * 반영과 표시 해제를 한번에 해야 rebuild 가 그 사이를 보지 않으므로 @TransactionalEventListener 대신 직접 등록한다.
+     */
+    @EventListener
+    public void onChange(DataChangedEvent event) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            applyCommitted(event, Collections.emptyList());
+            return;
+        }
+        List<Long> teams = teamsOf(event);
+        begin(teams);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED)
+                    applyCommitted(event, teams);
+                else
+                    end(teams);
+            }
+        });
+    }
+
+    private void applyCommitted(DataChangedEvent event, List<Long> teams) {
+        if (event.getType() == Type.BULK) {
+            end(teams);
+            rebuild();
+            return;
+        }
+        synchronized (this) {
+            if (event.getEntityType() == Member.class)
+                applyMemberChange(event.getBefore(), event.getAfter());
+            else if (event.getEntityType() == Team.class)
+                applyTeamChange(event.getType(), (Team) event.getEntity());
+            end(teams);
+            if (changedDuringRebuild != null)
+                changedDuringRebuild.addAll(teamsOf(event));
+        }
+    }
+
+    private static List<Long> teamsOf(DataChangedEvent event) {
+        List<Long> teams = new ArrayList<>(2);
+        if (event.getEntityType() == Team.class) {
+            teams.add(((Team) event.getEntity()).getId());
+        } else if (event.getEntityType() == Member.class) {
+            if (event.getBefore() != null)
+                teams.add(teamKey(event.getBefore().getTeamId()));
+            if (event.getAfter() != null)
+                teams.add(teamKey(event.getAfter().getTeamId()));
+        }
+        return teams;
+    }
+
+    private synchronized void begin(List<Long> teams) {
+        for (Long teamId : teams)
+            inFlight.merge(teamId, 1, Integer::sum);
+    }
+
+    private synchronized void end(List<Long> teams) {
+        for (Long teamId : teams)
+            inFlight.computeIfPresent(teamId, (id, count) -> count > 1 ? count - 1 : null);
+        notifyAll();
+    }
+
+    private synchronized void applyMemberChange(MemberState before, MemberState after) {
+        if (before != null && before.equals(after))
+            return;
+        if (before != null)
+            bucket(before.getTeamId()).add(before.getAge(), -1);
+        if (after != null)
+            bucket(after.getTeamId()).add(after.getAge(), 1);
+    }
+
+    private synchronized void applyTeamChange(Type type, Team changed) {
+        if (type == Type.DELETE) {
+            statistics.remove(changed.getId());
+            return;
+        }
+        bucket(changed.getId()).name = changed.getName();
+    }
+
+    private TeamStatistics bucket(Long teamId) {
+        return statistics.computeIfAbsent(teamKey(teamId), id -> new TeamStatistics(null));
+    }
+
+    private static long teamKey(Long teamId) {
+        return teamId == null ? NO_TEAM : teamId;
+    }
+
+    static class TeamStatistics {
+        private String name;
+        private long memberCount;
+        private long ageCount;
+        private long ageSum;
+        private final TreeMap<Integer, Long> ageHistogram = new TreeMap<>();
+
+        private TeamStatistics(String name) {
+            this.name = name;
+        }
+
+        private void add(Integer age, long count) {
+            memberCount += count;
+            if (age == null)
+                return;
+            ageCount += count;
+            ageSum += (long) age * count;
+            ageHistogram.merge(age, count, Long::sum);
+            if (ageHistogram.get(age) <= 0)
+                ageHistogram.remove(age);
+        }
+
+        private TeamStatisticsDto toDto(Long teamId) {
+            return new TeamStatisticsDto(
+                    teamId,
+                    name,
+                    memberCount,
+                    ageSum,
+                    ageCount > 0 ? (double) ageSum / ageCount : null,
+                    ageHistogram.isEmpty() ? null : ageHistogram.firstKey(),
+                    ageHistogram.isEmpty() ? null : ageHistogram.lastKey());
+        }
+    }
+}
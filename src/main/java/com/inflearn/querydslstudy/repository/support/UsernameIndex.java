@@ -0,0 +1,344 @@
+package com.inflearn.querydslstudy.repository.support;
+
+import com.inflearn.querydslstudy.config.ReplicaRoutingDataSource;
+import com.inflearn.querydslstudy.entity.DataChangedEvent;
+import com.inflearn.querydslstudy.entity.DataChangedEvent.Type;
+import com.inflearn.querydslstudy.entity.Member;
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static com.inflearn.querydslstudy.entity.QMember.member;
+
+/*
+ * username 부분 검색(like '%x%')용 trigram 인덱스 (member.username-index.enabled, 기본은 사용하지 않음)
+ * like '%x%' 는 DB 인덱스를 사용할 수 없어서 항상 전체 스캔이므로, username 의 3글자 조각(trigram)별 회원 id 를 메모리에 두고
+ * 검색어의 trigram 중 가장 회원이 적은 것만 확인해서 후보 id 를 찾는다. 쿼리에서는 member.id in (후보) 로 pk 조회만 한다.
+ * 회원은 id 순으로 정렬된 long[] 과 username 배열에, trigram 별 회원 id 는 정렬된 long[] 에 박싱 없이 저장한다.
+ * 검색은 read lock, 변경 반영은 write lock 을 잡으므로 검색끼리는 동시에 실행된다.
+ * - 검색어가 3글자보다 짧거나 후보가 max-candidates 보다 많으면 empty 를 돌려주고 그냥 like 로 검색한다.
+ * - 커밋 이후에 반영하므로 읽기/쓰기 트랜잭션 안에서는 사용하지 않는다. (아직 커밋 안된 회원이 빠진다)
+ * - 애플리케이션 시작시와 bulk 변경 이후에는 DB 에서 다시 만든다. (rebuild 참고)
+ *   bulk 변경 이후의 rebuild 는 커밋한 스레드를 붙잡지 않도록 indexRebuildExecutor 에서 실행하고, 끝날때까지는 like 로 검색한다.
+ */
+@Component
+public class UsernameIndex {
+
+    private static final int GRAM = 3;
+    private static final int LOAD_BATCH_SIZE = 10_000;
+
+    private final JPAQueryFactory queryFactory;
+    private final TransactionTemplate readOnlyTransaction;
+    private final boolean enabled;
+    private final int maxCandidates;
+    private final Executor rebuildExecutor;
+    private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+    // bulk 변경 횟수. rebuild 가 읽기 시작한 뒤에 bulk 변경이 있었으면 다음 rebuild 까지 ready 로 바꾸지 않는다.
+    private final AtomicLong bulkChanges = new AtomicLong();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object rebuildLock = new Object();
+
+    private long[] ids = new long[0];
+    // 삭제된 회원은 null
+    private String[] usernames = new String[0];
+    private int size;
+    private Map<String, Posting> postings = new HashMap<>();
+    private volatile boolean ready;
+    // rebuild 중에 들어온 변경 (rebuild 중이 아니면 null)
+    private List<DataChangedEvent> pendingChanges;
+
+    public UsernameIndex(JPAQueryFactory queryFactory,
+                         PlatformTransactionManager transactionManager,
+                         @Value("${member.username-index.enabled:false}") boolean enabled,
+                         @Value("${member.username-index.max-candidates:1000}") int maxCandidates,
+                         @Qualifier("indexRebuildExecutor") Executor rebuildExecutor) {
+        this.queryFactory = queryFactory;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        // AFTER_COMMIT 리스너(커밋된 트랜잭션의 afterCompletion)에서 호출될 수 있으므로 새 트랜잭션으로 읽는다.
+        this.readOnlyTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.enabled = enabled;
+        this.maxCandidates = maxCandidates;
+        this.rebuildExecutor = rebuildExecutor;
+    }
+
+    /**
+     * username 에 term 이 포함된 회원 id (오름차순)
+     * 인덱스를 사용할 수 없으면 empty
+     */
+    public Optional<List<Long>> findIdsContaining(String term) {
+        if (!ready || term.length() < GRAM || inReadWriteTransaction())
+            return Optional.empty();
+
+        lock.readLock().lock();
+        try {
+            Posting smallest = null;
+            for (String gram : grams(term)) {
+                Posting posting = postings.get(gram);
+                if (posting == null)
+                    return Optional.of(Collections.emptyList());
+                if (smallest == null || posting.size < smallest.size)
+                    smallest = posting;
+            }
+
+            // posting 이 id 순이므로 결과도 id 순이다.
+            List<Long> result = new ArrayList<>();
+            for (int i = 0; i < smallest.size; i++) {
+                long id = smallest.ids[i];
+                String username = usernames[Arrays.binarySearch(ids, 0, size, id)];
+                if (username != null && username.contains(term)) {
+                    if (result.size() == maxCandidates)
+                        return Optional.empty();
+                    result.add(id);
+                }
+            }
+            return Optional.of(result);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // 시작하기 전에 bulk 변경 이벤트로 이미 만들었거나 만들고 있으면 (ex. InitPerfData) 다시 읽지 않는다.
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!ready && bulkChanges.get() == 0)
+            rebuild();
+    }
+
+    /*
+     * 새 인덱스는 락 없이 만들고 바꿔 끼운다. 읽는 동안 커밋된 변경은 빠져있을 수 있으므로
+     * rebuild 가 시작된 뒤 들어온 이벤트를 모아뒀다가 바꿔 끼운 직후 다시 적용한다.
+     * 변경 후 username 을 그대로 쓰는 방식이라 이미 읽은 변경을 한번 더 적용해도 결과가 같다.
+     */
+    public void rebuild() {
+        if (!enabled)
+            return;
+        synchronized (rebuildLock) {
+            long bulkChangesBefore = bulkChanges.get();
+            setPendingChanges(new ArrayList<>());
+            try {
+                Loaded loaded = load();
+                Map<String, Posting> built = new HashMap<>();
+                for (int row = 0; row < loaded.size; row++) {
+                    // id 순으로 추가하므로 posting 도 정렬된 상태가 된다.
+                    for (String gram : grams(loaded.usernames[row]))
+                        built.computeIfAbsent(gram, key -> new Posting()).append(loaded.ids[row]);
+                }
+
+                lock.writeLock().lock();
+                try {
+                    ids = loaded.ids;
+                    usernames = loaded.usernames;
+                    size = loaded.size;
+                    postings = built;
+                    for (DataChangedEvent event : pendingChanges)
+                        apply(event);
+                    ready = bulkChanges.get() == bulkChangesBefore;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            } finally {
+                setPendingChanges(null);
+            }
+        }
+    }
+
+    // 전체를 Tuple 목록으로 들고 있지 않도록 id 순으로 나눠서 읽는다.
+    Loaded load() {
+        return readOnlyTransaction.execute(status -> {
+            Loaded loaded = new Loaded();
+            long lastId = Long.MIN_VALUE;
+            List<Tuple> rows;
+            do {
+                rows = queryFactory
+                        .select(member.id, member.username)
+                        .from(member)
+                        .where(member.id.gt(lastId))
+                        .orderBy(member.id.asc())
+                        .limit(LOAD_BATCH_SIZE)
+                        .fetch();
+                for (Tuple row : rows) {
+                    if (row.get(member.username) != null)
+                        loaded.add(row.get(member.id), row.get(member.username));
+                }
+                if (!rows.isEmpty())
+                    lastId = rows.get(rows.size() - 1).get(member.id);
+            } while (rows.size() == LOAD_BATCH_SIZE);
+            return loaded;
+        });
+    }
+
+    private void setPendingChanges(List<DataChangedEvent> changes) {
+        lock.writeLock().lock();
+        try {
+            pendingChanges = changes;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onChange(DataChangedEvent event) {
+        if (!enabled || event.getEntityType() != Member.class)
+            return;
+        if (event.getType() == Type.BULK) {
+            bulkChanges.incrementAndGet();
+            ready = false;
+            scheduleRebuild();
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            apply(event);
+            if (pendingChanges != null)
+                pendingChanges.add(event);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // 이미 실행을 기다리는 rebuild 가 있으면 그 rebuild 가 이번 변경도 읽는다.
+    private void scheduleRebuild() {
+        if (!rebuildScheduled.compareAndSet(false, true))
+            return;
+        rebuildExecutor.execute(ReplicaRoutingDataSource.wrap(() -> {
+            rebuildScheduled.set(false);
+            rebuild();
+        }));
+    }
+
+    private void apply(DataChangedEvent event) {
+        Member changed = (Member) event.getEntity();
+        long id = changed.getId();
+        String username = event.getType() == Type.DELETE ? null : changed.getUsername();
+
+        int row = Arrays.binarySearch(ids, 0, size, id);
+        String previous = row >= 0 ? usernames[row] : null;
+        if (previous != null && previous.equals(username))
+            return;
+        if (previous != null) {
+            for (String gram : grams(previous)) {
+                Posting posting = postings.get(gram);
+                posting.remove(id);
+                if (posting.size == 0)
+                    postings.remove(gram);
+            }
+        }
+        if (username == null) {
+            if (row >= 0)
+                usernames[row] = null;
+            return;
+        }
+        if (row < 0)
+            row = insertRow(-row - 1, id);
+        usernames[row] = username;
+        for (String gram : grams(username))
+            postings.computeIfAbsent(gram, key -> new Posting()).insert(id);
+    }
+
+    // IDENTITY 로 생성되는 id 는 보통 가장 크므로 대부분 배열 끝에 추가된다.
+    private int insertRow(int row, long id) {
+        if (size == ids.length) {
+            int capacity = Math.max(16, size + (size >> 1));
+            ids = Arrays.copyOf(ids, capacity);
+            usernames = Arrays.copyOf(usernames, capacity);
+        }
+        if (row < size) {
+            System.arraycopy(ids, row, ids, row + 1, size - row);
+            System.arraycopy(usernames, row, usernames, row + 1, size - row);
+        }
+        ids[row] = id;
+        size++;
+        return row;
+    }
+
+    private static Set<String> grams(String value) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM <= value.length(); i++)
+            grams.add(value.substring(i, i + GRAM));
+        return grams;
+    }
+
+    private static boolean inReadWriteTransaction() {
+        return TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+    static class Loaded {
+        private long[] ids = new long[1024];
+        private String[] usernames = new String[1024];
+        private int size;
+
+        private void add(long id, String username) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size + (size >> 1));
+                usernames = Arrays.copyOf(usernames, ids.length);
+            }
+            ids[size] = id;
+            usernames[size] = username;
+            size++;
+        }
+    }
+
+    // trigram 하나의 회원 id (오름차순)
+    private static final class Posting {
+        private long[] ids = new long[4];
+        private int size;
+
+        private void append(long id) {
+            if (size == ids.length)
+                ids = Arrays.copyOf(ids, size + (size >> 1) + 1);
+            ids[size++] = id;
+        }
+
+        private void insert(long id) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index >= 0)
+                return;
+            index = -index - 1;
+            if (index == size) {
+                append(id);
+                return;
+            }
+            if (size == ids.length)
+                ids = Arrays.copyOf(ids, size + (size >> 1) + 1);
+            System.arraycopy(ids, index, ids, index + 1, size - index);
+            ids[index] = id;
+            size++;
+        }
+
+        private void remove(long id) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index < 0)
+                return;
+            System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+            size--;
+        }
+    }
+}
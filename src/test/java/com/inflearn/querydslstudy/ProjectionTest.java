@@ -6,6 +6,7 @@ import com.inflearn.querydslstudy.dto.UserDto;
 import com.inflearn.querydslstudy.entity.Member;
 import com.inflearn.querydslstudy.entity.QMember;
 import com.inflearn.querydslstudy.entity.Team;
+import com.inflearn.querydslstudy.repository.support.FastProjections;
 import com.querydsl.core.Tuple;
 import com.querydsl.core.types.Projections;
 import com.querydsl.jpa.impl.JPAQueryFactory;
@@ -20,6 +21,8 @@ import javax.transaction.Transactional;
 import java.util.List;
 
 import static com.inflearn.querydslstudy.entity.QMember.member;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 
 @SpringBootTest
 @Transactional
@@ -128,4 +131,28 @@ public class ProjectionTest {
 
         result.forEach(System.out::println);
     }
+
+    @Test
+    void fast_bean_projection() {
+        List<MemberDto> memberDtos = queryFactory
+                .select(FastProjections.bean(MemberDto.class,
+                        member.username,
+                        member.age))
+                .from(member)
+                .orderBy(member.id.asc())
+                .fetch();
+
+        assertThat(memberDtos).extracting("username").containsExactly("member1", "member2", "member3", "member4");
+        assertThat(memberDtos).extracting("age").containsExactly(10, 20, 30, 40);
+
+        // alias 는 Projections.fields 와 같이 프로퍼티 이름으로 사용한다.
+        List<UserDto> users = queryFactory
+                .select(FastProjections.bean(UserDto.class,
+                        member.username.as("name"), member.age.as("agee")))
+                .from(member)
+                .where(member.username.eq("member3"))
+                .fetch();
+
+        assertThat(users).extracting("name", "agee").containsExactly(tuple("member3", 30));
+    }
 }
@@ -3,12 +3,14 @@ package com.inflearn.querydslstudy;
 import com.inflearn.querydslstudy.entity.Member;
 import com.inflearn.querydslstudy.entity.QMember;
 import com.inflearn.querydslstudy.entity.Team;
+import com.inflearn.querydslstudy.support.QueryCountExtension;
 import com.querydsl.core.QueryResults;
 import com.querydsl.core.Tuple;
 import com.querydsl.jpa.JPAExpressions;
 import com.querydsl.jpa.impl.JPAQueryFactory;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 
@@ -18,10 +20,12 @@ import java.util.List;
 
 import static com.inflearn.querydslstudy.entity.QMember.member;
 import static com.inflearn.querydslstudy.entity.QTeam.team;
+import static com.inflearn.querydslstudy.support.QueryCountExtension.assertSelectCount;
 import static org.assertj.core.api.Assertions.assertThat;
 
 @SpringBootTest
 @Transactional
+@ExtendWith(QueryCountExtension.class)
 public class QuerydslBasicTest {
 
     @Autowired
@@ -231,18 +235,34 @@ public class QuerydslBasicTest {
 
     @Test
     void fetch_join_no() {
-        queryFactory
+        em.flush();
+        em.clear();
+        QueryCountExtension.reset();
+
+        List<Member> members = queryFactory
                 .selectFrom(member)
                 .join(member.team, team)
                 .fetch();
+        assertSelectCount(1);
+
+        // team 은 지연 로딩이라 처음 접근할때 team 마다 select 가 한번씩 더 나간다. (N+1)
+        members.forEach(m -> m.getTeam().getName());
+        assertSelectCount(1 + 2);
     }
 
     @Test
     void fetch_join_use() {
-        queryFactory
+        em.flush();
+        em.clear();
+        QueryCountExtension.reset();
+
+        List<Member> members = queryFactory
                 .selectFrom(member)
                 .join(member.team, team).fetchJoin()
                 .fetch();
+
+        members.forEach(m -> m.getTeam().getName());
+        assertSelectCount(1);
     }
 
     /*
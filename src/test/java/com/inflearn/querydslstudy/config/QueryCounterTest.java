@@ -0,0 +1,59 @@
+package com.inflearn.querydslstudy.config;
+
+import com.inflearn.querydslstudy.config.QueryCounter.StatementType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class QueryCounterTest {
+
+    @AfterEach
+    void cleanup() {
+        QueryCounter.end();
+    }
+
+    @Test
+    void statement_type() {
+        assertThat(QueryCounter.typeOf("select m.id from member m")).isEqualTo(StatementType.SELECT);
+        assertThat(QueryCounter.typeOf("/* select m from Member m */ select member0_.id from member member0_"))
+                .isEqualTo(StatementType.SELECT);
+        assertThat(QueryCounter.typeOf("  (select 1) union (select 2)")).isEqualTo(StatementType.SELECT);
+        assertThat(QueryCounter.typeOf("INSERT into member values (?)")).isEqualTo(StatementType.INSERT);
+        assertThat(QueryCounter.typeOf("update member set age=?")).isEqualTo(StatementType.UPDATE);
+        assertThat(QueryCounter.typeOf("delete from member")).isEqualTo(StatementType.DELETE);
+        assertThat(QueryCounter.typeOf("call next value for hibernate_sequence")).isEqualTo(StatementType.OTHER);
+    }
+
+    @Test
+    void counts_only_registered_thread_and_wrapped_tasks() throws Exception {
+        QueryCounter.count("select 1", 1);
+        assertThat(QueryCounter.current()).isNull();
+
+        QueryCounter.Counts counts = QueryCounter.start();
+        QueryCounter.count("select 1", 1);
+        QueryCounter.count("insert into member values (?)", 3);
+        CompletableFuture.runAsync(QueryCounter.wrap(() -> QueryCounter.count("select 2", 1))).get();
+        CompletableFuture.runAsync(() -> QueryCounter.count("select 3", 1)).get();
+
+        assertThat(counts.get(StatementType.SELECT)).isEqualTo(2);
+        assertThat(counts.get(StatementType.INSERT)).isEqualTo(3);
+        assertThat(counts.getTotal()).isEqualTo(5);
+    }
+
+    @Test
+    void fail_over_budget() {
+        QueryCounter.Counts counts = new QueryCounter.Counts(2, true);
+        QueryCounter.attach(counts);
+
+        QueryCounter.count("select 1", 1);
+        QueryCounter.count("select 2", 1);
+        assertThat(counts.isOverBudget()).isFalse();
+        assertThatThrownBy(() -> QueryCounter.count("select 3", 1))
+                .isInstanceOf(QueryBudgetExceededException.class)
+                .hasMessageContaining("select=3");
+    }
+}
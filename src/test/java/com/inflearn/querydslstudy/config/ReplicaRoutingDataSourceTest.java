@@ -0,0 +1,109 @@
+package com.inflearn.querydslstudy.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class ReplicaRoutingDataSourceTest {
+
+    ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(mock(DataSource.class),
+            Arrays.asList(mock(DataSource.class), mock(DataSource.class)),
+            ReplicaRoutingDataSource.Strategy.ROUND_ROBIN, true);
+
+    @AfterEach
+    void cleanup() {
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        ReplicaRoutingDataSource.endRequest();
+    }
+
+    @Test
+    void read_only_transaction_goes_to_replicas_in_turn() {
+        transaction(true);
+
+        assertThat(routing.determineCurrentLookupKey()).isEqualTo(0);
+        assertThat(routing.determineCurrentLookupKey()).isEqualTo(1);
+        assertThat(routing.determineCurrentLookupKey()).isEqualTo(0);
+    }
+
+    @Test
+    void write_transaction_and_no_transaction_go_to_primary() {
+        assertThat(routing.determineCurrentLookupKey()).isEqualTo(ReplicaRoutingDataSource.PRIMARY);
+
+        transaction(false);
+        assertThat(routing.determineCurrentLookupKey()).isEqualTo(ReplicaRoutingDataSource.PRIMARY);
+    }
+
+    @Test
+    void reads_after_write_in_same_request_stay_on_primary() {
+        ReplicaRoutingDataSource.beginRequest();
+        transaction(true);
+        assertThat(routing.determineCurrentLookupKey()).isEqualTo(0);
+
+        transaction(false);
+        routing.determineCurrentLookupKey();
+
+        transaction(true);
+        assertThat(routing.determineCurrentLookupKey()).isEqualTo(ReplicaRoutingDataSource.PRIMARY);
+
+        // 요청이 끝나면 다시 replica 를 사용한다.
+        ReplicaRoutingDataSource.endRequest();
+        assertThat(routing.determineCurrentLookupKey()).isEqualTo(1);
+    }
+
+    @Test
+    void write_in_request_is_seen_by_wrapped_task_on_other_thread() throws Exception {
+        ReplicaRoutingDataSource.beginRequest();
+        transaction(false);
+        routing.determineCurrentLookupKey();
+
+        Object key = CompletableFuture.supplyAsync(ReplicaRoutingDataSource.wrap(() -> {
+            transaction(true);
+            try {
+                return routing.determineCurrentLookupKey();
+            } finally {
+                cleanup();
+            }
+        })).get();
+        assertThat(key).isEqualTo(ReplicaRoutingDataSource.PRIMARY);
+
+        // wrap 하지 않은 task 는 요청 상태를 모른다.
+        key = CompletableFuture.supplyAsync(() -> {
+            transaction(true);
+            try {
+                return routing.determineCurrentLookupKey();
+            } finally {
+                cleanup();
+            }
+        }).get();
+        assertThat(key).isEqualTo(0);
+    }
+
+    @Test
+    void primary_only_request_reads_from_primary_even_without_sticky() {
+        ReplicaRoutingDataSource notSticky = new ReplicaRoutingDataSource(mock(DataSource.class),
+                Arrays.asList(mock(DataSource.class)), ReplicaRoutingDataSource.Strategy.ROUND_ROBIN, false);
+        transaction(true);
+
+        // 요청 범위가 아니면 무시한다.
+        ReplicaRoutingDataSource.usePrimaryInRequest();
+        assertThat(notSticky.determineCurrentLookupKey()).isEqualTo(0);
+
+        ReplicaRoutingDataSource.beginRequest();
+        assertThat(notSticky.determineCurrentLookupKey()).isEqualTo(0);
+        ReplicaRoutingDataSource.usePrimaryInRequest();
+        assertThat(notSticky.determineCurrentLookupKey()).isEqualTo(ReplicaRoutingDataSource.PRIMARY);
+    }
+
+    private void transaction(boolean readOnly) {
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(readOnly);
+    }
+}
@@ -0,0 +1,91 @@
+package com.inflearn.querydslstudy.config;
+
+import com.inflearn.querydslstudy.config.QueryCounter.StatementType;
+import com.inflearn.querydslstudy.entity.Member;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class SlowQueryLogTest {
+
+    @Autowired
+    DataSource dataSource;
+
+    @Autowired
+    SlowQueryLog slowQueryLog;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Test
+    void normalizes_comments_whitespace_and_in_lists() {
+        String sql = "/* select m from Member m */ select member0_.id\n    from member member0_ where member0_.id in (?, ?,?)";
+
+        assertThat(SlowQueryLog.normalize(sql)).isEqualTo("select member0_.id from member member0_ where member0_.id in (?)");
+    }
+
+    @Test
+    void aggregates_every_statement_and_buffers_only_slow_ones() {
+        QueryLogProperties properties = new QueryLogProperties();
+        properties.setSlowThreshold(Duration.ofMillis(10));
+        properties.setBufferSize(1);
+        SlowQueryLog log = new SlowQueryLog(properties);
+        log.shutdown(); // 버퍼를 비우지 않도록 로그 스레드를 멈춘다.
+
+        log.record("select 1 where ? = ?", Arrays.asList(1, 2), Duration.ofMillis(1).toNanos());
+        log.record("select  1 where ? = ?", Arrays.asList(3, 4), Duration.ofMillis(20).toNanos());
+        log.record("select 1 where ? = ?", Arrays.asList(5, 6), Duration.ofMillis(30).toNanos());
+
+        assertThat(log.statistics()).hasSize(1);
+        SlowQueryLog.StatementStatistics stats = log.statistics().get(0);
+        assertThat(stats.getCount()).isEqualTo(3);
+        assertThat(stats.getMaxMillis()).isEqualTo(30);
+        // 느린 statement 두개 중 하나는 버퍼에 자리가 없어서 버려진다.
+        assertThat(log.dropped()).isEqualTo(1);
+    }
+
+    @Test
+    void data_source_statements_are_recorded() {
+        assertThat(dataSource).isInstanceOf(QueryLogDataSource.class);
+
+        transactionTemplate.execute(status -> em.createQuery("select m from Member m where m.username = :username", Member.class)
+                .setParameter("username", "member1")
+                .getResultList());
+
+        assertThat(slowQueryLog.statistics())
+                .anySatisfy(stats -> assertThat(stats.getStatement()).startsWith("select").contains("from member").contains("username=?"));
+    }
+
+    @Test
+    void plain_statement_batch_is_recorded_and_counted_per_sql() throws Exception {
+        QueryCounter.Counts counts = QueryCounter.start();
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.addBatch("update member set age = age where id = -1");
+            statement.addBatch("delete from member where id = -1");
+            statement.executeBatch();
+        } finally {
+            QueryCounter.end();
+        }
+
+        assertThat(counts.get(StatementType.UPDATE)).isEqualTo(1);
+        assertThat(counts.get(StatementType.DELETE)).isEqualTo(1);
+        assertThat(slowQueryLog.statistics())
+                .anySatisfy(stats -> assertThat(stats.getStatement()).isEqualTo("delete from member where id = -1"))
+                .noneSatisfy(stats -> assertThat(stats.getStatement()).isNull());
+    }
+}
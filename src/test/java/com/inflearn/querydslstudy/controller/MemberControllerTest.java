@@ -0,0 +1,33 @@
+package com.inflearn.querydslstudy.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "spring.data.web.pageable.max-page-size=100")
+@AutoConfigureMockMvc
+class MemberControllerTest {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Test
+    void cursor_page_size_is_bounded() throws Exception {
+        mockMvc.perform(get("/v4/members").param("size", "100"))
+                .andExpect(request().asyncStarted());
+
+        mockMvc.perform(get("/v4/members").param("size", "101"))
+                .andExpect(status().isBadRequest());
+        // size + 1 로 조회하므로 int 최대값도 거절해야 한다.
+        mockMvc.perform(get("/v4/members").param("size", String.valueOf(Integer.MAX_VALUE)))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/v4/members").param("size", "0"))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,74 @@
+package com.inflearn.querydslstudy.controller;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// 로컬에는 복제 구성이 없으므로 primary 와 같은 DB 를 replica 로 지정하고, 커넥션 풀별 커넥션 획득 횟수로 라우팅을 확인한다.
+@SpringBootTest(properties = "member.datasource.replica-urls=${spring.datasource.url}")
+@AutoConfigureMockMvc
+class MemberSearchETagsReplicaTest {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Test
+    void plain_search_reads_from_replica() throws Exception {
+        long primary = acquired("primary");
+        long replica = acquired("replica-0");
+
+        String eTag = search(get("/v3/members").param("teamName", "teamA").param("size", "5"));
+
+        assertThat(eTag).endsWith("-replica\"");
+        assertThat(acquired("replica-0")).isGreaterThan(replica);
+        assertThat(acquired("primary")).isEqualTo(primary);
+    }
+
+    @Test
+    void revalidation_reads_from_primary_then_not_modified() throws Exception {
+        String replicaETag = search(get("/v3/members").param("teamName", "teamB").param("size", "5"));
+
+        // replica 에서 읽은 결과의 ETag 는 버전을 알 수 없으므로 맞지 않고, primary 에서 다시 읽는다.
+        long primary = acquired("primary");
+        long replica = acquired("replica-0");
+        String primaryETag = search(get("/v3/members").param("teamName", "teamB").param("size", "5")
+                .header(HttpHeaders.IF_NONE_MATCH, replicaETag));
+
+        assertThat(primaryETag).isNotEqualTo(replicaETag).doesNotEndWith("-replica\"");
+        assertThat(acquired("primary")).isGreaterThan(primary);
+        assertThat(acquired("replica-0")).isEqualTo(replica);
+
+        mockMvc.perform(get("/v3/members").param("teamName", "teamB").param("size", "5")
+                .header(HttpHeaders.IF_NONE_MATCH, primaryETag))
+                .andExpect(request().asyncNotStarted())
+                .andExpect(status().isNotModified());
+    }
+
+    private String search(MockHttpServletRequestBuilder builder) throws Exception {
+        MvcResult result = mockMvc.perform(builder)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk());
+        return result.getResponse().getHeader(HttpHeaders.ETAG);
+    }
+
+    private long acquired(String pool) {
+        return meterRegistry.get("hikaricp.connections.acquire").tag("pool", pool).timer().count();
+    }
+}
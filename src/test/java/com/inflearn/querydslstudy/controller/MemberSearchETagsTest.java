@@ -0,0 +1,50 @@
+package com.inflearn.querydslstudy.controller;
+
+import com.inflearn.querydslstudy.repository.support.DataVersion;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class MemberSearchETagsTest {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    DataVersion dataVersion;
+
+    @Test
+    void not_modified_until_data_version_changes() throws Exception {
+        MvcResult first = mockMvc.perform(get("/v3/members").param("teamName", "teamA").param("size", "5"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String eTag = first.getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(eTag).isNotNull();
+
+        // 빈 조건은 조건이 없는 것과 같으므로 같은 ETag 가 된다. 쿼리는 실행하지 않는다.
+        mockMvc.perform(get("/v3/members").param("teamName", "teamA").param("username", "").param("size", "5")
+                .header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(request().asyncNotStarted())
+                .andExpect(status().isNotModified());
+
+        mockMvc.perform(get("/v3/members").param("teamName", "teamB").param("size", "5")
+                .header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(request().asyncStarted());
+
+        dataVersion.bump();
+        mockMvc.perform(get("/v3/members").param("teamName", "teamA").param("size", "5")
+                .header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(request().asyncStarted());
+    }
+}
@@ -0,0 +1,110 @@
+package com.inflearn.querydslstudy.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "member.bulkhead.limits.slow=1")
+@AutoConfigureMockMvc
+class QueryBulkheadTest {
+
+    @Autowired
+    QueryBulkhead queryBulkhead;
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Test
+    void rejects_with_429_when_endpoint_limit_is_reached() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        DeferredResult<String> first = queryBulkhead.submit("slow", () -> {
+            await(release);
+            return "done";
+        });
+
+        assertThatThrownBy(() -> queryBulkhead.submit("slow", () -> "second"))
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS));
+        // 다른 엔드포인트는 영향을 받지 않는다.
+        assertThat(queryBulkhead.availablePermits("other")).isEqualTo(4);
+
+        release.countDown();
+        waitForResult(first);
+        assertThat(first.getResult()).isEqualTo("done");
+        assertThat(queryBulkhead.availablePermits("slow")).isEqualTo(1);
+    }
+
+    @Test
+    void streaming_body_holds_permit_while_writing() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // 만들기만 하고 실행하지 않은 body 는 permit 을 잡지 않는다.
+        queryBulkhead.stream("slow", out -> out.write(1));
+        assertThat(queryBulkhead.availablePermits("slow")).isEqualTo(1);
+
+        CompletableFuture<Void> first = CompletableFuture.runAsync(() -> {
+            try {
+                queryBulkhead.stream("slow", out -> {
+                    started.countDown();
+                    await(release);
+                }).writeTo(new ByteArrayOutputStream());
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThatThrownBy(() -> queryBulkhead.stream("slow", out -> out.write(1)).writeTo(new ByteArrayOutputStream()))
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS));
+
+        release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        assertThat(queryBulkhead.availablePermits("slow")).isEqualTo(1);
+    }
+
+    @Test
+    void search_endpoint_runs_asynchronously() throws Exception {
+        MvcResult result = mockMvc.perform(get("/v2/members").param("size", "2"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.size").value(2));
+    }
+
+    private void waitForResult(DeferredResult<?> result) throws InterruptedException {
+        for (int i = 0; i < 100 && !result.hasResult(); i++)
+            TimeUnit.MILLISECONDS.sleep(20);
+        // permit 은 결과를 설정한 다음에 반환된다.
+        TimeUnit.MILLISECONDS.sleep(20);
+    }
+
+    private void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.inflearn.querydslstudy.entity;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.transaction.Transactional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+ * cache 프로필이 없으면 2차 캐시를 사용하지 않는다. (캐시 동작은 TeamRepositoryTest)
+ */
+@SpringBootTest
+@Transactional
+class TeamCacheTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    EntityManagerFactory emf;
+
+    @Test
+    void second_level_cache_is_off_without_cache_profile() {
+        SessionFactoryImplementor sessionFactory = emf.unwrap(SessionFactoryImplementor.class);
+        assertThat(sessionFactory.getSessionFactoryOptions().isSecondLevelCacheEnabled()).isFalse();
+        assertThat(sessionFactory.getSessionFactoryOptions().isQueryCacheEnabled()).isFalse();
+
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        em.flush();
+        em.clear();
+        em.find(Team.class, teamA.getId());
+
+        assertThat(emf.getCache().contains(Team.class, teamA.getId())).isFalse();
+    }
+}
@@ -0,0 +1,55 @@
+package com.inflearn.querydslstudy.repository;
+
+import com.inflearn.querydslstudy.dto.MemberImport;
+import com.inflearn.querydslstudy.entity.Member;
+import com.inflearn.querydslstudy.entity.Team;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "member.bulk-load.batch-size=2",
+        "member.bulk-load.commit-interval=4"
+})
+@Transactional
+class MemberBulkLoaderTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberBulkLoader memberBulkLoader;
+
+    @Test
+    void load_test() {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+
+        long loaded = memberBulkLoader.load(Stream.of(
+                new MemberImport("member1", 10, "teamA"),
+                new MemberImport("member2", 20, "teamB"),
+                new MemberImport("member3", 30, "teamB"),
+                new MemberImport("member4", 40, "teamB"),
+                new MemberImport("member5", null, null)
+        ));
+
+        List<Member> members = em.createQuery("select m from Member m left join fetch m.team order by m.id", Member.class)
+                .getResultList();
+        List<Team> teams = em.createQuery("select t from Team t", Team.class).getResultList();
+
+        assertThat(loaded).isEqualTo(5);
+        assertThat(members).extracting("username").containsExactly("member1", "member2", "member3", "member4", "member5");
+        assertThat(members.get(0).getTeam()).isEqualTo(teamA);
+        assertThat(members.get(3).getTeam().getName()).isEqualTo("teamB");
+        assertThat(members.get(4).getTeam()).isNull();
+        assertThat(members.get(4).getAge()).isNull();
+        assertThat(teams).extracting("name").containsExactlyInAnyOrder("teamA", "teamB");
+    }
+}
@@ -0,0 +1,89 @@
+package com.inflearn.querydslstudy.repository;
+
+import com.inflearn.querydslstudy.dto.MemberSearchCondition;
+import com.inflearn.querydslstudy.entity.Member;
+import com.inflearn.querydslstudy.entity.Team;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "member.bulk.chunk-size=2")
+@Transactional
+class MemberBulkOperationTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    Team teamA;
+    Team teamB;
+
+    @BeforeEach
+    void setup() {
+        teamA = new Team("teamA");
+        teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+        em.persist(new Member("member5", 50, teamB));
+    }
+
+    @Test
+    void bulk_add_age_test() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamB");
+
+        long count = memberRepository.bulkAddAge(condition, 1);
+
+        assertThat(count).isEqualTo(3);
+        assertThat(findAll()).extracting("age").containsExactly(10, 20, 31, 41, 51);
+    }
+
+    @Test
+    void bulk_move_to_team_test() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(20);
+        condition.setAgeLoe(40);
+
+        long count = memberRepository.bulkMoveToTeam(condition, teamA.getId());
+
+        List<Member> members = findAll();
+        assertThat(count).isEqualTo(3);
+        assertThat(members).extracting("team.name").containsExactly("teamA", "teamA", "teamA", "teamA", "teamB");
+    }
+
+    @Test
+    void bulk_delete_test() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(30);
+
+        long count = memberRepository.bulkDelete(condition);
+
+        assertThat(count).isEqualTo(3);
+        assertThat(findAll()).extracting("username").containsExactly("member1", "member2");
+    }
+
+    @Test
+    void bulk_nothing_matched() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername("nobody");
+
+        assertThat(memberRepository.bulkDelete(condition)).isEqualTo(0);
+    }
+
+    private List<Member> findAll() {
+        return em.createQuery("select m from Member m join fetch m.team order by m.id", Member.class).getResultList();
+    }
+}
@@ -0,0 +1,79 @@
+package com.inflearn.querydslstudy.repository;
+
+import com.inflearn.querydslstudy.dto.MemberSearchCondition;
+import com.inflearn.querydslstudy.dto.MemberTeamDto;
+import com.inflearn.querydslstudy.entity.Member;
+import com.inflearn.querydslstudy.entity.Team;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+ * searchPageParallel 은 별도 트랜잭션에서 조회하므로 테스트 데이터를 커밋하고 끝나면 지운다.
+ */
+@SpringBootTest
+class MemberRepositoryParallelTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @BeforeEach
+    void setup() {
+        transactionTemplate.execute(status -> {
+            Team teamA = new Team("teamA");
+            Team teamB = new Team("teamB");
+            em.persist(teamA);
+            em.persist(teamB);
+            em.persist(new Member("member1", 10, teamA));
+            em.persist(new Member("member2", 20, teamA));
+            em.persist(new Member("member3", 30, teamB));
+            em.persist(new Member("member4", 40, teamB));
+            return null;
+        });
+    }
+
+    @AfterEach
+    void cleanup() {
+        transactionTemplate.execute(status -> {
+            em.createQuery("delete from Member").executeUpdate();
+            return em.createQuery("delete from Team").executeUpdate();
+        });
+    }
+
+    @Test
+    void search_page_parallel_middle_page() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+
+        Page<MemberTeamDto> result = memberRepository.searchPageParallel(condition, PageRequest.of(1, 1));
+
+        assertThat(result.getTotalElements()).isEqualTo(4);
+        assertThat(result.getContent()).extracting("username").containsExactly("member2");
+    }
+
+    @Test
+    void search_page_parallel_same_as_complex() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamB");
+
+        Page<MemberTeamDto> parallel = memberRepository.searchPageParallel(condition, PageRequest.of(0, 10));
+        Page<MemberTeamDto> serial = memberRepository.searchPageComplex(condition, PageRequest.of(0, 10));
+
+        assertThat(parallel.getTotalElements()).isEqualTo(serial.getTotalElements());
+        assertThat(parallel.getContent()).isEqualTo(serial.getContent());
+    }
+}
@@ -1,19 +1,25 @@
 package com.inflearn.querydslstudy.repository;
 
+import com.inflearn.querydslstudy.dto.MemberCursorPage;
 import com.inflearn.querydslstudy.dto.MemberSearchCondition;
 import com.inflearn.querydslstudy.dto.MemberTeamDto;
 import com.inflearn.querydslstudy.entity.Member;
 import com.inflearn.querydslstudy.entity.Team;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.annotation.Profile;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 
 import javax.persistence.EntityManager;
 import javax.transaction.Transactional;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static com.inflearn.querydslstudy.entity.QMember.member;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -29,6 +35,9 @@ class MemberRepositoryTest {
     @Autowired
     MemberRepository memberRepository;
 
+    @Autowired
+    MeterRegistry meterRegistry;
+
     @Test
     void basic_test() {
         Member member = new Member("member1", 10);
@@ -99,6 +108,88 @@ class MemberRepositoryTest {
 
     }
 
+    @Test
+    void search_page_complex_metrics_test() {
+        initTeamAndMember();
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+        double skippedBefore = meterRegistry.counter("member.repository.count", "method", "searchPageComplex", "result", "skipped").count();
+        double executedBefore = meterRegistry.counter("member.repository.count", "method", "searchPageComplex", "result", "executed").count();
+
+        //when
+        memberRepository.searchPageComplex(condition, PageRequest.of(0, 10)); // 첫 페이지에서 끝나므로 count 생략
+        memberRepository.searchPageComplex(condition, PageRequest.of(0, 1)); // 다음 페이지가 있으므로 count 실행
+
+        //then
+        assertThat(meterRegistry.counter("member.repository.count", "method", "searchPageComplex", "result", "skipped").count())
+                .isEqualTo(skippedBefore + 1);
+        assertThat(meterRegistry.counter("member.repository.count", "method", "searchPageComplex", "result", "executed").count())
+                .isEqualTo(executedBefore + 1);
+        assertThat(meterRegistry.get("member.repository.query").tag("method", "searchPageComplex").tag("shape", "teamName").timer().count())
+                .isGreaterThanOrEqualTo(2);
+    }
+
+    @Test
+    void search_after_test() {
+        initTeamAndMember();
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        double rowsBefore = searchAfterRows();
+
+        //when
+        MemberCursorPage first = memberRepository.searchAfter(condition, null, 3);
+        MemberCursorPage second = memberRepository.searchAfter(condition, MemberCursorPage.decodeCursor(first.getNextCursor()), 3);
+
+        //then
+        assertThat(first.isHasNext()).isTrue();
+        assertThat(first.getContent()).extracting("username").containsExactly("member1", "member2", "member3");
+        assertThat(second.isHasNext()).isFalse();
+        assertThat(second.getNextCursor()).isNull();
+        assertThat(second.getContent()).extracting("username").containsExactly("member4");
+        // 다음 페이지 확인용으로 한개 더 조회한 row 는 건수에 넣지 않는다.
+        assertThat(searchAfterRows()).isEqualTo(rowsBefore + 4);
+    }
+
+    private double searchAfterRows() {
+        DistributionSummary rows = meterRegistry.find("member.repository.rows").tag("method", "searchAfter").summary();
+        return rows == null ? 0 : rows.totalAmount();
+    }
+
+    @Test
+    void search_slice_test() {
+        initTeamAndMember();
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+
+        //when
+        Slice<MemberTeamDto> first = memberRepository.searchSlice(condition, PageRequest.of(0, 3));
+        Slice<MemberTeamDto> last = memberRepository.searchSlice(condition, PageRequest.of(1, 3));
+
+        //then
+        assertThat(first.hasNext()).isTrue();
+        assertThat(first.getContent()).extracting("username").containsExactly("member1", "member2", "member3");
+        assertThat(last.hasNext()).isFalse();
+        assertThat(last.getContent()).extracting("username").containsExactly("member4");
+    }
+
+    @Test
+    void search_stream_test() {
+        initTeamAndMember();
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamB");
+
+        //when
+        List<MemberTeamDto> result;
+        try (Stream<MemberTeamDto> stream = memberRepository.searchStream(condition, 2)) {
+            result = stream.collect(Collectors.toList());
+        }
+
+        //then
+        assertThat(result).extracting("username").containsExactly("member3", "member4");
+    }
+
     private void initTeamAndMember() {
         Team teamA = new Team("teamA");
         Team teamB = new Team("teamB");
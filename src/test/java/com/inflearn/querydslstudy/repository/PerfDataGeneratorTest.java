@@ -0,0 +1,96 @@
+package com.inflearn.querydslstudy.repository;
+
+import com.inflearn.querydslstudy.config.PerfDataProperties;
+import com.inflearn.querydslstudy.entity.Member;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class PerfDataGeneratorTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    PerfDataGenerator perfDataGenerator;
+
+    @AfterEach
+    void cleanup() {
+        transactionTemplate.execute(status -> {
+            em.createQuery("delete from Member").executeUpdate();
+            return em.createQuery("delete from Team").executeUpdate();
+        });
+    }
+
+    @Test
+    void generate_skewed_and_reproducible() {
+        long loaded = perfDataGenerator.generate(properties(3));
+
+        assertThat(loaded).isEqualTo(5_000);
+        assertThat(count("select count(*) from member")).isEqualTo(5_000);
+        assertThat(count("select count(*) from team")).isEqualTo(50);
+
+        // zipf : 첫번째 팀이 가장 크고 마지막 팀보다 훨씬 크다.
+        List<Map<String, Object>> teamSizes = jdbcTemplate.queryForList(
+                "select t.name, count(m.id) as cnt from team t left join member m on m.team_id = t.id group by t.name order by cnt desc");
+        assertThat(teamSizes.get(0).get("name")).isEqualTo("team0");
+        assertThat(((Number) teamSizes.get(0).get("cnt")).longValue())
+                .isGreaterThan(10 * ((Number) teamSizes.get(teamSizes.size() - 1).get("cnt")).longValue());
+
+        // 나이는 어린 쪽으로, 이름은 일부가 중복된다.
+        assertThat(count("select count(*) from member where age < 25")).isGreaterThan(count("select count(*) from member where age >= 75"));
+        assertThat(count("select count(distinct username) from member")).isLessThan(5_000);
+
+        String firstRun = checksum();
+        cleanup();
+        perfDataGenerator.generate(properties(1));
+        assertThat(checksum()).isEqualTo(firstRun);
+
+        // 직접 지정한 id 다음부터 identity 가 이어진다.
+        Member member = new Member("after", 10);
+        transactionTemplate.execute(status -> {
+            em.persist(member);
+            return null;
+        });
+        assertThat(member.getId()).isGreaterThan(jdbcTemplate.queryForObject("select max(id) from member where username <> 'after'", Long.class));
+    }
+
+    private PerfDataProperties properties(int threads) {
+        PerfDataProperties properties = new PerfDataProperties();
+        properties.setMembers(5_000);
+        properties.setTeams(50);
+        properties.setCommonUsernames(100);
+        properties.setThreads(threads);
+        properties.setChunkSize(700);
+        properties.setBatchSize(100);
+        return properties;
+    }
+
+    private long count(String sql) {
+        return jdbcTemplate.queryForObject(sql, Long.class);
+    }
+
+    // id 와 무관하게 (실행마다 id 가 달라진다) 순서대로 이름/나이/팀 이름을 이어붙인 값
+    private String checksum() {
+        List<String> rows = jdbcTemplate.queryForList(
+                "select concat(m.username, ':', m.age, ':', coalesce(t.name, '-')) from member m left join team t on m.team_id = t.id order by m.id",
+                String.class);
+        return Integer.toHexString(rows.hashCode()) + "/" + rows.size();
+    }
+}
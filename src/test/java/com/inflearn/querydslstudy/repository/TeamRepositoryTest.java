@@ -0,0 +1,97 @@
+package com.inflearn.querydslstudy.repository;
+
+import com.inflearn.querydslstudy.dto.MemberImport;
+import com.inflearn.querydslstudy.entity.Member;
+import com.inflearn.querydslstudy.entity.Team;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ActiveProfiles({"test", "cache"})
+@SpringBootTest
+class TeamRepositoryTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    EntityManagerFactory emf;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    TeamRepository teamRepository;
+
+    @Autowired
+    MemberBulkLoader memberBulkLoader;
+
+    @AfterEach
+    void cleanup() {
+        transactionTemplate.execute(status -> {
+            em.createQuery("delete from Member").executeUpdate();
+            return em.createQuery("delete from Team").executeUpdate();
+        });
+        emf.getCache().evictAll();
+    }
+
+    @Test
+    void team_is_cached_after_lazy_loading() {
+        Long teamId = transactionTemplate.execute(status -> {
+            Team teamA = new Team("teamA");
+            em.persist(teamA);
+            em.persist(new Member("member1", 10, teamA));
+            em.persist(new Member("member2", 20, teamA));
+            return teamA.getId();
+        });
+        emf.getCache().evictAll();
+
+        transactionTemplate.execute(status -> {
+            List<Member> members = em.createQuery("select m from Member m", Member.class).getResultList();
+            members.forEach(member -> member.getTeam().getName());
+            return null;
+        });
+
+        assertThat(emf.getCache().contains(Team.class, teamId)).isTrue();
+    }
+
+    @Test
+    void find_by_name_reflects_rename() {
+        Long teamId = transactionTemplate.execute(status -> {
+            Team teamA = new Team("teamA");
+            em.persist(teamA);
+            return teamA.getId();
+        });
+        assertThat(teamRepository.findByName("teamA")).extracting("id").containsExactly(teamId);
+
+        transactionTemplate.execute(status -> {
+            em.find(Team.class, teamId).changeName("teamC");
+            return null;
+        });
+
+        assertThat(teamRepository.findByName("teamA")).isEmpty();
+        assertThat(teamRepository.findByName("teamC")).extracting("id").containsExactly(teamId);
+    }
+
+    @Test
+    void find_by_name_reflects_bulk_loaded_team() {
+        assertThat(teamRepository.findByName("teamB")).isEmpty();
+
+        // JDBC 로 적재한 팀은 hibernate 가 모르므로 적재가 끝나면 query cache 를 비워야 한다.
+        try (Stream<MemberImport> imports = Stream.of(new MemberImport("member1", 10, "teamB"))) {
+            memberBulkLoader.load(imports);
+        }
+
+        assertThat(teamRepository.findByName("teamB")).extracting("name").containsExactly("teamB");
+    }
+}
@@ -0,0 +1,86 @@
+package com.inflearn.querydslstudy.repository;
+
+import com.inflearn.querydslstudy.dto.TeamWithMembersDto;
+import com.inflearn.querydslstudy.entity.Member;
+import com.inflearn.querydslstudy.entity.Team;
+import com.inflearn.querydslstudy.support.QueryCountExtension;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+
+import static com.inflearn.querydslstudy.support.QueryCountExtension.assertSelectCount;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+ * TeamRepository.findTeamsWithMembers 의 쿼리 수 (N+1 이 없는지)
+ * batch 크기를 2 로 줄여서 페이지의 팀이 batch 크기보다 많을때 in 쿼리가 batch 마다 한번씩 나가는지 확인한다.
+ */
+@SpringBootTest(properties = "team.members.batch-size=2")
+@Transactional
+@ExtendWith(QueryCountExtension.class)
+class TeamWithMembersQueryTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    TeamRepository teamRepository;
+
+    @BeforeEach
+    void before() {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        Team teamC = new Team("teamC");
+        Team teamD = new Team("teamD");
+        em.persist(teamA);
+        em.persist(teamB);
+        em.persist(teamC);
+        em.persist(teamD);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamD));
+        em.flush();
+        em.clear();
+        QueryCountExtension.reset();
+    }
+
+    @Test
+    void find_teams_with_members() {
+        Page<TeamWithMembersDto> result = teamRepository.findTeamsWithMembers(PageRequest.of(0, 2));
+
+        assertThat(result.getTotalElements()).isEqualTo(4);
+        assertThat(result.getContent()).extracting("teamName").containsExactly("teamA", "teamB");
+        assertThat(result.getContent().get(0).getMembers()).extracting("username").containsExactly("member1", "member2");
+        assertThat(result.getContent().get(1).getMembers()).extracting("username").containsExactly("member3");
+        // 팀 페이지 + 회원 in 쿼리 + count
+        assertSelectCount(1 + 1 + 1);
+    }
+
+    @Test
+    void member_query_runs_once_per_batch() {
+        Page<TeamWithMembersDto> result = teamRepository.findTeamsWithMembers(PageRequest.of(0, 3));
+
+        assertThat(result.getContent()).extracting("teamName").containsExactly("teamA", "teamB", "teamC");
+        assertThat(result.getContent().get(2).getMembers()).isEmpty();
+        // 팀 페이지 + 회원 in 쿼리 2번(batch 크기 2) + count
+        assertSelectCount(1 + 2 + 1);
+    }
+
+    @Test
+    void count_is_skipped_on_last_page() {
+        Page<TeamWithMembersDto> result = teamRepository.findTeamsWithMembers(PageRequest.of(0, 10));
+
+        assertThat(result.getTotalElements()).isEqualTo(4);
+        assertThat(result.getContent().get(3).getMembers()).extracting("username").containsExactly("member4");
+        // 팀 페이지 + 회원 in 쿼리 2번, 페이지가 다 안찼으므로 count 는 생략
+        assertSelectCount(1 + 2);
+    }
+}
@@ -0,0 +1,32 @@
+package com.inflearn.querydslstudy.repository.support;
+
+import com.inflearn.querydslstudy.dto.MemberDto;
+import com.inflearn.querydslstudy.dto.UserDto;
+import org.junit.jupiter.api.Test;
+
+import static com.inflearn.querydslstudy.entity.QMember.member;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FastProjectionsTest {
+
+    @Test
+    void mapper_is_created_once_per_class_and_properties() {
+        FastProjections.FastBean<MemberDto> first = FastProjections.bean(MemberDto.class, member.username, member.age);
+        int cached = FastProjections.cachedMapperCount();
+        FastProjections.FastBean<MemberDto> second = FastProjections.bean(MemberDto.class, member.username, member.age);
+
+        assertThat(FastProjections.cachedMapperCount()).isEqualTo(cached);
+        assertThat(second).isEqualTo(first);
+
+        MemberDto dto = second.newInstance("member1", 10);
+        assertThat(dto.getUsername()).isEqualTo("member1");
+        assertThat(dto.getAge()).isEqualTo(10);
+        // null 은 넣지 않으므로 primitive 는 기본값
+        assertThat(second.newInstance("member2", null).getAge()).isZero();
+
+        UserDto user = FastProjections.<UserDto>bean(UserDto.class, member.username.as("name"), member.age.as("agee"))
+                .newInstance("user", 20);
+        assertThat(user.getName()).isEqualTo("user");
+        assertThat(user.getAgee()).isEqualTo(20);
+    }
+}
@@ -0,0 +1,211 @@
+package com.inflearn.querydslstudy.repository.support;
+
+import com.inflearn.querydslstudy.dto.MemberSearchCondition;
+import com.inflearn.querydslstudy.dto.MemberTeamDto;
+import com.inflearn.querydslstudy.entity.DataChangedEvent;
+import com.inflearn.querydslstudy.entity.DataChangedEvent.Type;
+import com.inflearn.querydslstudy.entity.Member;
+import com.inflearn.querydslstudy.entity.MemberState;
+import com.inflearn.querydslstudy.entity.Team;
+import com.inflearn.querydslstudy.repository.MemberRepository;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "member.column-index.enabled=true")
+class MemberColumnIndexTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    MemberColumnIndex columnIndex;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    void cleanup() {
+        transactionTemplate.execute(status -> {
+            em.createQuery("delete from Member").executeUpdate();
+            em.createQuery("delete from Team").executeUpdate();
+            return null;
+        });
+        // 직접 실행한 bulk 쿼리는 변경 이벤트가 없으므로 다시 만든다.
+        columnIndex.rebuild();
+    }
+
+    @Test
+    void filters_age_and_team_with_exact_total() {
+        List<Member> members = new ArrayList<>();
+        transactionTemplate.execute(status -> {
+            Team teamA = new Team("teamA");
+            Team teamB = new Team("teamB");
+            em.persist(teamA);
+            em.persist(teamB);
+            for (int i = 0; i < 100; i++) {
+                Member member = new Member("member" + i, i, i % 2 == 0 ? teamA : teamB);
+                em.persist(member);
+                members.add(member);
+            }
+            return null;
+        });
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+        condition.setAgeGoe(10);
+        condition.setAgeLoe(49);
+
+        MemberColumnIndex.Result result = columnIndex.search(condition, 3, 5).get();
+        assertThat(result.getTotal()).isEqualTo(20);
+        assertThat(result.getIds()).containsExactly(
+                members.get(16).getId(), members.get(18).getId(), members.get(20).getId(),
+                members.get(22).getId(), members.get(24).getId());
+
+        Page<MemberTeamDto> page = memberRepository.searchPageComplex(condition, PageRequest.of(3, 5));
+        assertThat(page.getTotalElements()).isEqualTo(20);
+        assertThat(page.getContent()).extracting("username")
+                .containsExactly("member40", "member42", "member44", "member46", "member48");
+        assertThat(page.getContent()).extracting("teamName").containsOnly("teamA");
+    }
+
+    @Test
+    void follows_committed_changes() {
+        Team team = new Team("teamA");
+        Member member1 = new Member("member1", 10, team);
+        Member member2 = new Member("member2", 20, team);
+        transactionTemplate.execute(status -> {
+            em.persist(team);
+            em.persist(member1);
+            em.persist(member2);
+            return null;
+        });
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(15);
+        assertThat(columnIndex.search(condition, 0, 10).get().getIds()).containsExactly(member2.getId());
+
+        transactionTemplate.execute(status -> {
+            em.find(Member.class, member1.getId()).setAge(30);
+            em.remove(em.find(Member.class, member2.getId()));
+            return null;
+        });
+        MemberColumnIndex.Result result = columnIndex.search(condition, 0, 10).get();
+        assertThat(result.getIds()).containsExactly(member1.getId());
+        assertThat(result.getTotal()).isEqualTo(1);
+
+        // username 조건이 있으면 인덱스를 사용하지 않는다.
+        condition.setUsername("member1");
+        assertThat(columnIndex.search(condition, 0, 10)).isEmpty();
+    }
+
+    @Test
+    void change_committed_during_rebuild_is_not_lost() {
+        Member member1 = new Member("member1", 10);
+        transactionTemplate.execute(status -> {
+            em.persist(member1);
+            return null;
+        });
+
+        // 이 인스턴스는 빈이 아니므로 이벤트는 직접 전달한다.
+        AtomicBoolean first = new AtomicBoolean(true);
+        MemberColumnIndex index = new MemberColumnIndex(queryFactory, transactionManager, true) {
+            @Override
+            Columns load() {
+                Columns loaded = super.load();
+                if (first.getAndSet(false)) {
+                    // 읽은 뒤, 바꿔 끼우기 전에 커밋된 변경
+                    transactionTemplate.execute(status -> {
+                        em.find(Member.class, member1.getId()).setAge(30);
+                        return null;
+                    });
+                    member1.setAge(30);
+                    onChange(new DataChangedEvent(Member.class, Type.UPDATE, member1,
+                            new MemberState(null, 10), new MemberState(null, 30)));
+                }
+                return loaded;
+            }
+        };
+        index.rebuild();
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(20);
+        MemberColumnIndex.Result result = index.search(condition, 0, 10).get();
+        assertThat(result.getIds()).containsExactly(member1.getId());
+        assertThat(result.getTotal()).isEqualTo(1);
+
+        // 같은 변경을 한번 더 받아도 결과는 같다.
+        index.rebuild();
+        assertThat(index.search(condition, 0, 10).get().getTotal()).isEqualTo(1);
+    }
+
+    @Test
+    void bulk_change_is_reloaded_in_new_transaction() {
+        transactionTemplate.execute(status -> {
+            em.persist(new Member("member1", 10));
+            return null;
+        });
+
+        List<Boolean> newTransactions = new ArrayList<>();
+        MemberColumnIndex index = new MemberColumnIndex(queryFactory, new PlatformTransactionManager() {
+            @Override
+            public TransactionStatus getTransaction(TransactionDefinition definition) {
+                TransactionStatus status = transactionManager.getTransaction(definition);
+                newTransactions.add(status.isNewTransaction());
+                return status;
+            }
+
+            @Override
+            public void commit(TransactionStatus status) {
+                transactionManager.commit(status);
+            }
+
+            @Override
+            public void rollback(TransactionStatus status) {
+                transactionManager.rollback(status);
+            }
+        }, true);
+
+        // AFTER_COMMIT 리스너처럼 커밋된 트랜잭션의 afterCompletion 에서 bulk 변경을 받는다.
+        transactionTemplate.execute(status -> {
+            em.createQuery("update Member m set m.age = 30").executeUpdate();
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int completion) {
+                    index.onChange(DataChangedEvent.bulk(Member.class));
+                }
+            });
+            return null;
+        });
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(20);
+        assertThat(newTransactions).isNotEmpty().containsOnly(true);
+        assertThat(index.search(condition, 0, 10).get().getTotal()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,64 @@
+package com.inflearn.querydslstudy.repository.support;
+
+import com.inflearn.querydslstudy.dto.MemberSearchCondition;
+import com.inflearn.querydslstudy.entity.Team;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class MemberCountCacheTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    MemberCountCache countCache;
+
+    @AfterEach
+    void cleanup() {
+        transactionTemplate.execute(status -> em.createQuery("delete from Team").executeUpdate());
+        countCache.clear();
+    }
+
+    @Test
+    void count_is_cached_per_normalized_condition() {
+        AtomicInteger executed = new AtomicInteger();
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+        MemberSearchCondition sameCondition = new MemberSearchCondition();
+        sameCondition.setTeamName("teamA");
+        sameCondition.setUsername("");
+
+        countCache.getOrCompute(condition, () -> executed.incrementAndGet());
+        long count = countCache.getOrCompute(sameCondition, () -> executed.incrementAndGet());
+
+        assertThat(executed.get()).isEqualTo(1);
+        assertThat(count).isEqualTo(1);
+    }
+
+    @Test
+    void count_is_invalidated_by_write() {
+        AtomicInteger executed = new AtomicInteger();
+        MemberSearchCondition condition = new MemberSearchCondition();
+
+        countCache.getOrCompute(condition, () -> executed.incrementAndGet());
+        transactionTemplate.execute(status -> {
+            em.persist(new Team("teamA"));
+            return null;
+        });
+        countCache.getOrCompute(condition, () -> executed.incrementAndGet());
+
+        assertThat(executed.get()).isEqualTo(2);
+    }
+}
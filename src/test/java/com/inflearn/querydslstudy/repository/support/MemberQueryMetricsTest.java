@@ -0,0 +1,45 @@
+package com.inflearn.querydslstudy.repository.support;
+
+import com.inflearn.querydslstudy.dto.MemberCursorPage;
+import com.inflearn.querydslstudy.dto.MemberSearchCondition;
+import com.inflearn.querydslstudy.dto.MemberTeamDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MemberQueryMetricsTest {
+
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    MemberQueryMetrics metrics = new MemberQueryMetrics(registry);
+    MemberSearchCondition condition = new MemberSearchCondition();
+
+    @Test
+    void rows_are_recorded_for_page_slice_cursor_page_and_list() {
+        List<MemberTeamDto> rows = Arrays.asList(
+                new MemberTeamDto(1L, "member1", 10, null, null),
+                new MemberTeamDto(2L, "member2", 20, null, null),
+                new MemberTeamDto(3L, "member3", 30, null, null));
+
+        metrics.record("page", condition, () -> new PageImpl<>(rows.subList(0, 2), PageRequest.of(0, 2), 3));
+        metrics.record("slice", condition, () -> new SliceImpl<>(rows.subList(0, 2), PageRequest.of(0, 2), true));
+        // size + 1 개를 조회하지만 응답에 포함되는 건 size 개
+        metrics.record("cursor", condition, () -> MemberCursorPage.of(rows, 2));
+        metrics.record("list", condition, () -> rows);
+
+        assertThat(totalRows("page")).isEqualTo(2);
+        assertThat(totalRows("slice")).isEqualTo(2);
+        assertThat(totalRows("cursor")).isEqualTo(2);
+        assertThat(totalRows("list")).isEqualTo(3);
+    }
+
+    private double totalRows(String method) {
+        return registry.get("member.repository.rows").tag("method", method).summary().totalAmount();
+    }
+}
@@ -0,0 +1,100 @@
+package com.inflearn.querydslstudy.repository.support;
+
+import com.inflearn.querydslstudy.dto.MemberSearchCondition;
+import com.inflearn.querydslstudy.dto.MemberSearchCondition.UsernameMatch;
+import com.inflearn.querydslstudy.dto.MemberTeamDto;
+import com.inflearn.querydslstudy.entity.Member;
+import com.inflearn.querydslstudy.entity.Team;
+import com.inflearn.querydslstudy.repository.support.MemberSearchTemplates.Kind;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Transactional
+class MemberSearchTemplatesTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberSearchTemplates searchTemplates;
+
+    @BeforeEach
+    void setup() {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+    }
+
+    @Test
+    void same_shape_reuses_template() {
+        MemberSearchCondition teamACondition = new MemberSearchCondition();
+        teamACondition.setTeamName("teamA");
+        teamACondition.setAgeGoe(15);
+        MemberSearchCondition teamBCondition = new MemberSearchCondition();
+        teamBCondition.setTeamName("teamB");
+        teamBCondition.setAgeGoe(35);
+
+        int before = searchTemplates.compiledTemplateCount();
+        List<MemberTeamDto> teamA = searchTemplates.fetch(teamACondition, Kind.CONTENT_ORDERED);
+        List<MemberTeamDto> teamB = searchTemplates.fetch(teamBCondition, Kind.CONTENT_ORDERED);
+        long teamBCount = searchTemplates.count(teamBCondition);
+
+        assertThat(teamA).extracting("username").containsExactly("member2");
+        assertThat(teamB).extracting("username").containsExactly("member4");
+        assertThat(teamB.get(0).getTeamName()).isEqualTo("teamB");
+        assertThat(teamBCount).isEqualTo(1);
+        assertThat(searchTemplates.compiledTemplateCount()).isLessThanOrEqualTo(before + 2);
+    }
+
+    @Test
+    void paging_with_template() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+
+        List<MemberTeamDto> page = searchTemplates.fetch(condition, Kind.CONTENT_ORDERED, 1, 2);
+
+        assertThat(page).extracting("username").containsExactly("member2", "member3");
+        assertThat(searchTemplates.count(condition)).isEqualTo(4);
+    }
+
+    @Test
+    void offset_beyond_int_range_is_empty() {
+        // ex. page=2000000, size=2000
+        long offset = (long) Integer.MAX_VALUE + 1;
+
+        assertThat(searchTemplates.fetch(new MemberSearchCondition(), Kind.CONTENT_ORDERED, offset, 2)).isEmpty();
+    }
+
+    @Test
+    void username_prefix_and_contains() {
+        assertThat(searchTemplates.fetch(username("member", UsernameMatch.PREFIX), Kind.CONTENT_ORDERED)).hasSize(4);
+        assertThat(searchTemplates.fetch(username("ber3", UsernameMatch.CONTAINS), Kind.CONTENT_ORDERED))
+                .extracting("username").containsExactly("member3");
+        assertThat(searchTemplates.count(username("ber", UsernameMatch.CONTAINS))).isEqualTo(4);
+        // like 특수문자는 이스케이프되어 문자 그대로 비교한다.
+        assertThat(searchTemplates.fetch(username("mem_", UsernameMatch.PREFIX), Kind.CONTENT)).isEmpty();
+        assertThat(searchTemplates.count(username("%", UsernameMatch.CONTAINS))).isZero();
+        // 검색 방식이 없으면 EXACT
+        assertThat(searchTemplates.fetch(username("member", null), Kind.CONTENT)).isEmpty();
+    }
+
+    private MemberSearchCondition username(String username, UsernameMatch match) {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername(username);
+        condition.setUsernameMatch(match);
+        return condition;
+    }
+}
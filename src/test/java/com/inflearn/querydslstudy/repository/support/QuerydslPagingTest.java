@@ -0,0 +1,125 @@
+package com.inflearn.querydslstudy.repository.support;
+
+import com.inflearn.querydslstudy.dto.MemberTeamDto;
+import com.inflearn.querydslstudy.dto.QMemberTeamDto;
+import com.inflearn.querydslstudy.entity.Member;
+import com.inflearn.querydslstudy.entity.Team;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+
+import static com.inflearn.querydslstudy.entity.QMember.member;
+import static com.inflearn.querydslstudy.entity.QTeam.team;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Transactional
+class QuerydslPagingTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @BeforeEach
+    void setup() {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+    }
+
+    @Test
+    void unreferenced_join_and_order_are_removed() {
+        JPAQuery<MemberTeamDto> query = contentQuery().where(member.age.goe(20));
+
+        JPAQuery<Long> countQuery = QuerydslPaging.countQuery(em, query, member.id);
+
+        assertThat(countQuery.toString()).contains("count(member1.id)")
+                .doesNotContain("join").doesNotContain("order by");
+        assertThat(countQuery.fetchOne()).isEqualTo(3);
+    }
+
+    @Test
+    void referenced_join_is_kept() {
+        JPAQuery<MemberTeamDto> query = contentQuery().where(team.name.eq("teamA"));
+
+        JPAQuery<Long> countQuery = QuerydslPaging.countQuery(em, query, member.id);
+
+        assertThat(countQuery.toString()).contains("left join member1.team as team");
+        assertThat(countQuery.fetchOne()).isEqualTo(2);
+    }
+
+    @Test
+    void collection_join_is_kept_and_fetch_join_is_removed() {
+        JPAQuery<Team> collectionJoin = queryFactory.selectFrom(team).leftJoin(team.members, member);
+        assertThat(QuerydslPaging.countQuery(em, collectionJoin, team.id).fetchOne()).isEqualTo(4);
+
+        JPAQuery<Member> fetchJoin = queryFactory.selectFrom(member)
+                .leftJoin(member.team, team).fetchJoin()
+                .where(team.name.eq("teamB"));
+        JPAQuery<Long> countQuery = QuerydslPaging.countQuery(em, fetchJoin, member.id);
+        assertThat(countQuery.toString()).doesNotContain("fetch");
+        assertThat(countQuery.fetchOne()).isEqualTo(2);
+    }
+
+    @Test
+    void entity_join_with_on_is_kept() {
+        // 회원마다 teamA, teamB 두 row 가 된다.
+        JPAQuery<Member> query = queryFactory.selectFrom(member)
+                .leftJoin(team).on(team.name.startsWith("team"));
+
+        JPAQuery<Long> countQuery = QuerydslPaging.countQuery(em, query, member.id);
+
+        assertThat(countQuery.toString()).contains("left join Team team");
+        assertThat(countQuery.fetchOne()).isEqualTo(query.fetch().size()).isEqualTo(8);
+    }
+
+    @Test
+    void unreferenced_collection_join_is_kept() {
+        Team teamC = new Team("teamC");
+        em.persist(teamC);
+
+        JPAQuery<Team> aliased = queryFactory.selectFrom(team).leftJoin(team.members, member);
+        JPAQuery<Team> withoutAlias = queryFactory.selectFrom(team).leftJoin(team.members);
+
+        // member 가 없는 teamC 도 한 row
+        assertThat(QuerydslPaging.countQuery(em, aliased, team.id).fetchOne()).isEqualTo(5);
+        assertThat(QuerydslPaging.countQuery(em, withoutAlias, team.id).fetchOne()).isEqualTo(5);
+    }
+
+    @Test
+    void get_page() {
+        Page<MemberTeamDto> page = QuerydslPaging.getPage(em, contentQuery(), PageRequest.of(1, 3), member.id);
+
+        assertThat(page.getTotalElements()).isEqualTo(4);
+        assertThat(page.getContent()).extracting("username").containsExactly("member4");
+    }
+
+    private JPAQuery<MemberTeamDto> contentQuery() {
+        return queryFactory
+                .select(new QMemberTeamDto(
+                        member.id.as("memberId"),
+                        member.username,
+                        member.age,
+                        team.id.as("teamId"),
+                        team.name.as("teamName")
+                ))
+                .from(member)
+                .leftJoin(member.team, team)
+                .orderBy(member.id.asc());
+    }
+}
@@ -0,0 +1,99 @@
+package com.inflearn.querydslstudy.repository.support;
+
+import com.inflearn.querydslstudy.dto.MemberSearchCondition;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SingleFlightTest {
+
+    DataVersion dataVersion = new DataVersion();
+    MemberQueryMetrics metrics = new MemberQueryMetrics(new SimpleMeterRegistry());
+    SingleFlight singleFlight = new SingleFlight(dataVersion, metrics);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    void cleanup() {
+        executor.shutdownNow();
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+    }
+
+    @Test
+    void concurrent_identical_calls_share_one_execution() throws Exception {
+        AtomicInteger executed = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<String> leader = executor.submit(() -> singleFlight.execute("search", condition("teamA"), PageRequest.of(0, 3), () -> {
+            executed.incrementAndGet();
+            started.countDown();
+            await(release);
+            return "result";
+        }));
+        started.await(5, TimeUnit.SECONDS);
+
+        List<Future<String>> followers = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            // 빈 문자열 조건은 정규화되어 같은 key 가 된다.
+            MemberSearchCondition same = condition("teamA");
+            same.setUsername("");
+            followers.add(executor.submit(() -> singleFlight.execute("search", same, PageRequest.of(0, 3), () -> {
+                executed.incrementAndGet();
+                return "other";
+            })));
+        }
+        while (metrics.coalescedCounter("search").count() < 3)
+            TimeUnit.MILLISECONDS.sleep(10);
+
+        release.countDown();
+        assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo("result");
+        for (Future<String> follower : followers)
+            assertThat(follower.get(5, TimeUnit.SECONDS)).isEqualTo("result");
+        assertThat(executed).hasValue(1);
+        assertThat(singleFlight.inFlightCount()).isZero();
+    }
+
+    @Test
+    void not_shared_after_data_change_or_inside_write_transaction() {
+        AtomicInteger executed = new AtomicInteger();
+        singleFlight.execute("search", condition("teamA"), null, () -> {
+            // leader 실행 중에 데이터가 바뀌면 같은 조건이라도 새로 실행한다.
+            dataVersion.bump();
+            return singleFlight.execute("search", condition("teamA"), null, executed::incrementAndGet);
+        });
+        assertThat(executed).hasValue(1);
+
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        singleFlight.execute("search", condition("teamA"), null, () ->
+                singleFlight.execute("search", condition("teamA"), null, executed::incrementAndGet));
+        assertThat(executed).hasValue(2);
+        assertThat(metrics.coalescedCounter("search").count()).isZero();
+    }
+
+    private MemberSearchCondition condition(String teamName) {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName(teamName);
+        return condition;
+    }
+
+    private void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
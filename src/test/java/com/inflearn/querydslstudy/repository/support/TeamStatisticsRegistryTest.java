@@ -0,0 +1,244 @@
+package com.inflearn.querydslstudy.repository.support;
+
+import com.inflearn.querydslstudy.dto.TeamStatisticsDto;
+import com.inflearn.querydslstudy.entity.DataChangedEvent;
+import com.inflearn.querydslstudy.entity.DataChangedEvent.Type;
+import com.inflearn.querydslstudy.entity.Member;
+import com.inflearn.querydslstudy.entity.Team;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+ * 통계는 커밋 이후에 반영되므로 테스트 데이터를 커밋하고 끝나면 지운다.
+ */
+@SpringBootTest
+class TeamStatisticsRegistryTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    TeamStatisticsRegistry registry;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    Long teamAId;
+    Long teamBId;
+
+    @BeforeEach
+    void setup() {
+        registry.rebuild();
+        transactionTemplate.execute(status -> {
+            Team teamA = new Team("teamA");
+            Team teamB = new Team("teamB");
+            em.persist(teamA);
+            em.persist(teamB);
+            em.persist(new Member("member1", 10, teamA));
+            em.persist(new Member("member2", 20, teamA));
+            em.persist(new Member("member3", 30, teamB));
+            em.persist(new Member("member4", 40, teamB));
+            teamAId = teamA.getId();
+            teamBId = teamB.getId();
+            return null;
+        });
+    }
+
+    @AfterEach
+    void cleanup() {
+        transactionTemplate.execute(status -> {
+            em.createQuery("delete from Member").executeUpdate();
+            return em.createQuery("delete from Team").executeUpdate();
+        });
+        registry.rebuild();
+    }
+
+    @Test
+    void statistics_same_as_group_by() {
+        List<TeamStatisticsDto> result = registry.findAll();
+
+        assertThat(result).extracting("teamName").containsExactly("teamA", "teamB");
+        assertThat(result.get(0).getAgeAvg()).isEqualTo(15);
+        assertThat(result.get(1).getAgeAvg()).isEqualTo(35);
+        assertThat(result.get(1).getMemberCount()).isEqualTo(2);
+    }
+
+    @Test
+    void statistics_follow_member_changes() {
+        transactionTemplate.execute(status -> {
+            Member member1 = findMember("member1");
+            Member member4 = findMember("member4");
+            member1.setAge(50);
+            member4.changeTeam(em.find(Team.class, teamAId));
+            em.remove(findMember("member3"));
+            return null;
+        });
+
+        List<TeamStatisticsDto> result = registry.findAll();
+        TeamStatisticsDto teamA = result.get(0);
+        TeamStatisticsDto teamB = result.get(1);
+
+        assertThat(teamA.getMemberCount()).isEqualTo(3);
+        assertThat(teamA.getAgeMin()).isEqualTo(20);
+        assertThat(teamA.getAgeMax()).isEqualTo(50);
+        assertThat(teamA.getAgeSum()).isEqualTo(110);
+        assertThat(teamB.getTeamId()).isEqualTo(teamBId);
+        assertThat(teamB.getMemberCount()).isEqualTo(0);
+        assertThat(teamB.getAgeAvg()).isNull();
+    }
+
+    @Test
+    void rollback_is_not_applied() {
+        transactionTemplate.execute(status -> {
+            findMember("member1").setAge(99);
+            em.flush();
+            status.setRollbackOnly();
+            return null;
+        });
+
+        assertThat(registry.findAll().get(0).getAgeMax()).isEqualTo(20);
+    }
+
+    @Test
+    void change_committed_after_rebuild_read_is_not_lost() {
+        // 이 인스턴스는 빈이 아니므로 이벤트는 직접 전달한다.
+        AtomicBoolean first = new AtomicBoolean(true);
+        TeamStatisticsRegistry concurrent = new TeamStatisticsRegistry(queryFactory, transactionManager) {
+            @Override
+            Map<Long, TeamStatistics> load(Set<Long> teamIds) {
+                Map<Long, TeamStatistics> loaded = super.load(teamIds);
+                if (first.getAndSet(false))
+                    insertMember(this);
+                return loaded;
+            }
+        };
+
+        concurrent.rebuild();
+
+        TeamStatisticsDto teamA = concurrent.findAll().get(0);
+        assertThat(teamA.getMemberCount()).isEqualTo(3);
+        assertThat(teamA.getAgeSum()).isEqualTo(80);
+    }
+
+    @Test
+    void change_committed_before_rebuild_read_is_not_counted_twice() throws Exception {
+        CountDownLatch committed = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+        TeamStatisticsRegistry concurrent = new TeamStatisticsRegistry(queryFactory, transactionManager) {
+            @Override
+            Map<Long, TeamStatistics> load(Set<Long> teamIds) {
+                // 커밋은 끝났지만 아직 반영되지 않은 변경이 있는 상태로 처음 읽고, 그 다음부터 반영되게 한다.
+                if (loads.incrementAndGet() == 2)
+                    release.countDown();
+                return super.load(teamIds);
+            }
+        };
+
+        // DB 커밋 이후 afterCompletion 에서 멈춰서 이벤트 반영이 늦어지는 트랜잭션
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<?> writer = executor.submit(() -> transactionTemplate.execute(status -> {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int completion) {
+                    committed.countDown();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            insertMember(concurrent);
+            return null;
+        }));
+        assertThat(committed.await(5, TimeUnit.SECONDS)).isTrue();
+
+        concurrent.rebuild();
+        writer.get(5, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        TeamStatisticsDto teamA = concurrent.findAll().get(0);
+        assertThat(teamA.getMemberCount()).isEqualTo(3);
+        assertThat(teamA.getAgeSum()).isEqualTo(80);
+    }
+
+    @Test
+    void bulk_change_is_reloaded_in_new_transaction() {
+        // 커밋된 트랜잭션의 afterCompletion 에서 다시 읽으므로 거기에 참여하지 않고 새 트랜잭션을 시작해야 한다.
+        List<Boolean> newTransactions = new ArrayList<>();
+        TeamStatisticsRegistry bulk = new TeamStatisticsRegistry(queryFactory, new PlatformTransactionManager() {
+            @Override
+            public TransactionStatus getTransaction(TransactionDefinition definition) {
+                TransactionStatus status = transactionManager.getTransaction(definition);
+                newTransactions.add(status.isNewTransaction());
+                return status;
+            }
+
+            @Override
+            public void commit(TransactionStatus status) {
+                transactionManager.commit(status);
+            }
+
+            @Override
+            public void rollback(TransactionStatus status) {
+                transactionManager.rollback(status);
+            }
+        });
+
+        transactionTemplate.execute(status -> {
+            em.createQuery("update Member m set m.age = m.age + 1").executeUpdate();
+            bulk.onChange(DataChangedEvent.bulk(Member.class));
+            return null;
+        });
+
+        assertThat(newTransactions).isNotEmpty().containsOnly(true);
+        assertThat(bulk.findAll().get(0).getAgeSum()).isEqualTo(32);
+    }
+
+    private void insertMember(TeamStatisticsRegistry target) {
+        transactionTemplate.execute(status -> {
+            Member member5 = new Member("member5", 50, em.find(Team.class, teamAId));
+            em.persist(member5);
+            target.onChange(new DataChangedEvent(Member.class, Type.INSERT, member5, null, member5.currentState()));
+            return null;
+        });
+    }
+
+    private Member findMember(String username) {
+        return em.createQuery("select m from Member m where m.username = :username", Member.class)
+                .setParameter("username", username)
+                .getSingleResult();
+    }
+}
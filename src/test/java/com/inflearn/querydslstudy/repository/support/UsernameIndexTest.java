@@ -0,0 +1,195 @@
+package com.inflearn.querydslstudy.repository.support;
+
+import com.inflearn.querydslstudy.dto.MemberSearchCondition;
+import com.inflearn.querydslstudy.dto.MemberSearchCondition.UsernameMatch;
+import com.inflearn.querydslstudy.entity.DataChangedEvent;
+import com.inflearn.querydslstudy.entity.DataChangedEvent.Type;
+import com.inflearn.querydslstudy.entity.Member;
+import com.inflearn.querydslstudy.entity.MemberState;
+import com.inflearn.querydslstudy.repository.MemberJpaRepository;
+import com.inflearn.querydslstudy.repository.support.MemberSearchTemplates.Kind;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "member.username-index.enabled=true")
+class UsernameIndexTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    UsernameIndex usernameIndex;
+
+    @Autowired
+    MemberSearchTemplates searchTemplates;
+
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    void cleanup() {
+        transactionTemplate.execute(status -> em.createQuery("delete from Member").executeUpdate());
+        // bulk delete 는 이벤트가 없으므로 다음 테스트를 위해 다시 만든다.
+        usernameIndex.rebuild();
+    }
+
+    @Test
+    void index_follows_committed_member_changes() {
+        Member kim = new Member("kimchi", 10);
+        transactionTemplate.execute(status -> {
+            em.persist(kim);
+            em.persist(new Member("bokkim", 20));
+            em.persist(new Member("lee", 30));
+            return null;
+        });
+
+        List<Long> ids = usernameIndex.findIdsContaining("kim").get();
+        assertThat(ids).hasSize(2).contains(kim.getId());
+        assertThat(usernameIndex.findIdsContaining("xyz").get()).isEmpty();
+        // 3글자보다 짧으면 인덱스를 사용하지 않는다.
+        assertThat(usernameIndex.findIdsContaining("ki")).isEmpty();
+
+        transactionTemplate.execute(status -> {
+            em.find(Member.class, kim.getId()).setUsername("park");
+            return null;
+        });
+        assertThat(usernameIndex.findIdsContaining("kim").get()).hasSize(1).doesNotContain(kim.getId());
+        assertThat(usernameIndex.findIdsContaining("par").get()).containsExactly(kim.getId());
+    }
+
+    @Test
+    void contains_search_uses_index_candidates() {
+        transactionTemplate.execute(status -> {
+            for (int i = 0; i < 5; i++)
+                em.persist(new Member("user" + i, i));
+            return null;
+        });
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername("ser3");
+        condition.setUsernameMatch(UsernameMatch.CONTAINS);
+
+        assertThat(searchTemplates.fetch(condition, Kind.CONTENT)).extracting("username").containsExactly("user3");
+        assertThat(searchTemplates.count(condition)).isEqualTo(1);
+        assertThat(memberJpaRepository.searchByBuilder(condition)).extracting("username").containsExactly("user3");
+
+        // 후보가 없으면 쿼리를 실행하지 않는다.
+        condition.setUsername("nobody");
+        assertThat(searchTemplates.fetch(condition, Kind.CONTENT)).isEmpty();
+        assertThat(memberJpaRepository.searchByBuilder(condition)).isEmpty();
+    }
+
+    @Test
+    void change_committed_during_rebuild_is_not_lost() {
+        Member kim = new Member("kimchi", 10);
+        transactionTemplate.execute(status -> {
+            em.persist(kim);
+            return null;
+        });
+
+        // 이 인스턴스는 빈이 아니므로 이벤트는 직접 전달한다.
+        AtomicBoolean first = new AtomicBoolean(true);
+        UsernameIndex index = new UsernameIndex(queryFactory, transactionManager, true, 1000, Runnable::run) {
+            @Override
+            Loaded load() {
+                Loaded loaded = super.load();
+                if (first.getAndSet(false)) {
+                    // 읽은 뒤, 바꿔 끼우기 전에 커밋된 변경
+                    transactionTemplate.execute(status -> {
+                        em.find(Member.class, kim.getId()).setUsername("parkchi");
+                        return null;
+                    });
+                    kim.setUsername("parkchi");
+                    onChange(new DataChangedEvent(Member.class, Type.UPDATE, kim,
+                            new MemberState(null, 10), new MemberState(null, 10)));
+                }
+                return loaded;
+            }
+        };
+        index.rebuild();
+
+        assertThat(index.findIdsContaining("kim").get()).isEmpty();
+        assertThat(index.findIdsContaining("park").get()).containsExactly(kim.getId());
+
+        // 같은 변경을 한번 더 받아도 결과는 같다.
+        index.rebuild();
+        assertThat(index.findIdsContaining("park").get()).containsExactly(kim.getId());
+        assertThat(index.findIdsContaining("chi").get()).containsExactly(kim.getId());
+    }
+
+    @Test
+    void bulk_change_rebuilds_off_committing_thread() {
+        transactionTemplate.execute(status -> {
+            em.persist(new Member("kimchi", 10));
+            return null;
+        });
+        List<Runnable> scheduled = new ArrayList<>();
+        UsernameIndex index = new UsernameIndex(queryFactory, transactionManager, true, 1000, scheduled::add);
+        index.rebuild();
+
+        transactionTemplate.execute(status -> em.createQuery("update Member m set m.username = 'parkchi'").executeUpdate());
+        index.onChange(DataChangedEvent.bulk(Member.class));
+        index.onChange(DataChangedEvent.bulk(Member.class));
+
+        // rebuild 가 끝날때까지는 인덱스를 사용하지 않고 (like 로 검색), 연속된 bulk 변경은 rebuild 한번으로 합친다.
+        assertThat(index.findIdsContaining("kim")).isEmpty();
+        assertThat(scheduled).hasSize(1);
+
+        scheduled.get(0).run();
+        assertThat(index.findIdsContaining("kim").get()).isEmpty();
+        assertThat(index.findIdsContaining("park").get()).hasSize(1);
+    }
+
+    @Test
+    void bulk_change_during_rebuild_keeps_index_unused() {
+        transactionTemplate.execute(status -> {
+            em.persist(new Member("kimchi", 10));
+            return null;
+        });
+        List<Runnable> scheduled = new ArrayList<>();
+        AtomicBoolean bulkDuringLoad = new AtomicBoolean();
+        UsernameIndex index = new UsernameIndex(queryFactory, transactionManager, true, 1000, scheduled::add) {
+            @Override
+            Loaded load() {
+                Loaded loaded = super.load();
+                if (bulkDuringLoad.getAndSet(false)) {
+                    // 읽은 뒤에 커밋된 bulk 변경은 이번 rebuild 에 빠져있다.
+                    transactionTemplate.execute(status -> em.createQuery("update Member m set m.username = 'parkchi'").executeUpdate());
+                    onChange(DataChangedEvent.bulk(Member.class));
+                }
+                return loaded;
+            }
+        };
+        index.rebuild();
+
+        bulkDuringLoad.set(true);
+        index.onChange(DataChangedEvent.bulk(Member.class));
+        scheduled.remove(0).run();
+
+        assertThat(index.findIdsContaining("kim")).isEmpty();
+        assertThat(scheduled).hasSize(1);
+
+        scheduled.remove(0).run();
+        assertThat(index.findIdsContaining("park").get()).hasSize(1);
+    }
+}
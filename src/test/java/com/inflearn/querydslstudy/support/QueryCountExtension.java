@@ -0,0 +1,59 @@
+package com.inflearn.querydslstudy.support;
+
+import com.inflearn.querydslstudy.config.QueryCounter;
+import com.inflearn.querydslstudy.config.QueryCounter.StatementType;
+import org.junit.jupiter.api.extension.AfterEachCallback;
+import org.junit.jupiter.api.extension.BeforeEachCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+ * 테스트마다 QueryCounter 를 등록한다. @ExtendWith(QueryCountExtension.class)
+ * 테스트 데이터 insert 는 flush 시점에 나가므로 em.flush() / em.clear() 후 reset() 하고 확인할 쿼리를 실행한다.
+ */
+public class QueryCountExtension implements BeforeEachCallback, AfterEachCallback {
+
+    @Override
+    public void beforeEach(ExtensionContext context) {
+        QueryCounter.start();
+    }
+
+    @Override
+    public void afterEach(ExtensionContext context) {
+        QueryCounter.end();
+    }
+
+    public static void reset() {
+        counts().reset();
+    }
+
+    public static void assertSelectCount(long expected) {
+        assertCount(StatementType.SELECT, expected);
+    }
+
+    public static void assertInsertCount(long expected) {
+        assertCount(StatementType.INSERT, expected);
+    }
+
+    public static void assertUpdateCount(long expected) {
+        assertCount(StatementType.UPDATE, expected);
+    }
+
+    public static void assertDeleteCount(long expected) {
+        assertCount(StatementType.DELETE, expected);
+    }
+
+    private static void assertCount(StatementType type, long expected) {
+        QueryCounter.Counts counts = counts();
+        assertThat(counts.get(type))
+                .as("%s statements (%s)", type, counts)
+                .isEqualTo(expected);
+    }
+
+    private static QueryCounter.Counts counts() {
+        QueryCounter.Counts counts = QueryCounter.current();
+        assertThat(counts).as("@ExtendWith(QueryCountExtension.class) 가 필요하다").isNotNull();
+        return counts;
+    }
+}